@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.commontest.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.unitedjiga.common.util.KeywordTable;
+import com.unitedjiga.common.util.Lexer;
+import com.unitedjiga.common.util.LexerSpec;
+
+/**
+ *
+ * @author Junji Mikami
+ */
+public class KeywordTableTest {
+
+    private static final String[] JAVA_KEYWORDS = {
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super",
+            "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while",
+    };
+
+    @Test
+    public void test1() {
+        KeywordTable table = KeywordTable.of(JAVA_KEYWORDS);
+        assertEquals(JAVA_KEYWORDS.length, table.size());
+        for (int id = 0; id < JAVA_KEYWORDS.length; id++) {
+            assertEquals(JAVA_KEYWORDS[id], table.keyword(id));
+            assertEquals(id, table.keywordId(new StringBuilder(JAVA_KEYWORDS[id])));
+        }
+        assertEquals(-1, table.keywordId("iff"));
+        assertEquals(-1, table.keywordId("Int"));
+        assertEquals(-1, table.keywordId(""));
+        assertEquals(-1, table.keywordId("synchronizedx"));
+    }
+
+    @Test
+    public void test2() {
+        KeywordTable table = KeywordTable.of();
+        assertEquals(0, table.size());
+        assertEquals(-1, table.keywordId("if"));
+    }
+
+    @Test(timeout = 10000)
+    public void test2_2() {
+        String[] keywords = new String[20000];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = "k" + Integer.toString(i, 36);
+        }
+        KeywordTable table = KeywordTable.of(keywords);
+        for (int id = 0; id < keywords.length; id++) {
+            assertEquals(id, table.keywordId(keywords[id]));
+            assertEquals(-1, table.keywordId("x" + keywords[id].substring(1)));
+        }
+    }
+
+    @Test
+    public void test2_3() {
+        String[] keywords = new String[500];
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = i % 2 == 0 ? "k" + i : "kw" + i + "x";
+        }
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange('0', '9').whitespaceChars(' ')
+                .keywords(KeywordTable.of(keywords)).build();
+        // 長さが範囲内で、格納位置のキーワードより長いワードもキーワードではありません。
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("k").append(i).append("yz ");
+        }
+        Lexer lexer = new Lexer(sb, spec);
+        while (lexer.hasNext()) {
+            lexer.next();
+            assertEquals(-1, lexer.keywordId());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test3_1() {
+        KeywordTable.of("if", "else", "if");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test3_2() {
+        KeywordTable.of("if", "");
+    }
+}
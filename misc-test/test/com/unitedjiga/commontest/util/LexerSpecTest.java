@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.commontest.util;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.unitedjiga.common.util.Lexer;
+import com.unitedjiga.common.util.LexerSpec;
+
+/**
+ *
+ * @author Junji Mikami
+ */
+public class LexerSpecTest {
+
+    private static final LexerSpec SPEC = LexerSpec.builder()
+            .whitespaceChars(' ')
+            .lineTerminatorChars('\n')
+            .wordCharRange('0', '9')
+            .build();
+
+    @Test
+    public void test1() {
+        Lexer lexer = new Lexer(new StringReader("12 3\n4"), SPEC);
+        assertEquals("12", lexer.nextWord());
+        assertEquals("3", lexer.nextWord());
+        assertFalse(lexer.hasNextInLine());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals("4", lexer.nextWord());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test2() {
+        Lexer lexer = new Lexer(new StringReader("1 2"), SPEC);
+        lexer.setWordChars(' ');
+        assertEquals("1 2", lexer.nextWord());
+
+        Lexer other = new Lexer(new StringReader("1 2"), SPEC);
+        assertEquals("1", other.nextWord());
+        assertEquals("2", other.nextWord());
+    }
+
+    @Test
+    public void test3() {
+        LexerSpec.Builder builder = SPEC.toBuilder();
+        LexerSpec spec1 = builder.build();
+        LexerSpec spec2 = builder.ordinaryChars('5').build();
+
+        Lexer lexer1 = new Lexer(new StringReader("456"), spec1);
+        assertEquals("456", lexer1.nextWord());
+
+        Lexer lexer2 = new Lexer(new StringReader("456"), spec2);
+        assertEquals("4", lexer2.nextWord());
+        assertEquals('5', lexer2.nextChar());
+        assertEquals("6", lexer2.nextWord());
+    }
+
+    @Test
+    public void test4() {
+        Lexer lexer = new Lexer(new StringReader("1-2"), SPEC);
+        lexer.setWordChars('-');
+        LexerSpec spec = lexer.spec();
+        lexer.reset('-');
+        assertEquals("1", lexer.nextWord());
+        assertEquals("1-2", new Lexer(new StringReader("1-2"), spec).nextWord());
+    }
+
+    @Test
+    public void test5() {
+        String input = IntStream.range(0, 1000).mapToObj(Integer::toString).collect(Collectors.joining(" "));
+        List<Long> counts = IntStream.range(0, 64).parallel().mapToObj(i -> {
+            long n = 0;
+            try (Lexer lexer = new Lexer(new StringReader(input), SPEC)) {
+                while (lexer.hasNext()) {
+                    lexer.nextWord();
+                    n++;
+                }
+            }
+            return n;
+        }).collect(Collectors.toList());
+        counts.forEach(n -> assertEquals(1000L, (long) n));
+    }
+}
@@ -24,16 +24,31 @@
 package com.unitedjiga.commontest.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.InputMismatchException;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.*;
@@ -41,7 +56,15 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.unitedjiga.common.util.Checkpoint;
+import com.unitedjiga.common.util.KeywordTable;
+import com.unitedjiga.common.util.Lexeme;
 import com.unitedjiga.common.util.Lexer;
+import com.unitedjiga.common.util.LexerSpec;
+import com.unitedjiga.common.util.OperatorTable;
+import com.unitedjiga.common.util.TokenBatch;
+import com.unitedjiga.common.util.TokenRules;
+import com.unitedjiga.common.util.WordCache;
 
 /**
  *
@@ -1405,6 +1428,1247 @@ public class LexerTest {
         fail();
     }
 
+    @Test
+    public void test30_1() {
+        Lexer lexer = new Lexer(new StringReader(" 01 2"));
+        lexer.setWhitespaceChars(' ').setWordChars('0', '1');
+        assertEquals("", lexer.tokenView().toString());
+        lexer.advance();
+        assertEquals("01", lexer.tokenView().toString());
+        assertEquals(" ", lexer.skippedWhitespaceView().toString());
+        assertEquals(" ", lexer.trailingWhitespaceView().toString());
+        lexer.advance();
+        assertEquals("2", lexer.tokenView().toString());
+        assertEquals(" ", lexer.skippedWhitespaceView().toString());
+        assertEquals("", lexer.trailingWhitespaceView().toString());
+    }
+
+    @Test
+    public void test30_2() {
+        Lexer lexer = new Lexer(new StringReader("0123456789"));
+        lexer.setWordChars(ZERO_TO_EIGHT);
+        CharSequence token = lexer.tokenView();
+        lexer.advance();
+        assertTrue(lexer.hasNext());
+        assertSame(token, lexer.tokenView());
+        assertEquals(9, token.length());
+        assertEquals('8', token.charAt(8));
+        assertEquals("345", token.subSequence(3, 6));
+        assertTrue("012345678".contentEquals(token));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void test30_3() {
+        Lexer lexer = new Lexer(new StringReader(""));
+        lexer.advance();
+        fail();
+    }
+
+    @Test
+    public void test31_1() {
+        Lexer lexer = new Lexer(new StringReader("\u5b57\u53e5\u3000\u89e3\u6790 a"));
+        lexer.reset().setWhitespaceChars('\u3000', ' ').setWordChars(Character.UnicodeScript.HAN);
+        assertEquals("\u5b57\u53e5", lexer.nextWord());
+        assertEquals("\u89e3\u6790", lexer.nextWord());
+        assertEquals("\u3000", lexer.skippedWhitespace());
+        assertEquals('a', lexer.nextChar());
+        assertEquals(" ", lexer.skippedWhitespace());
+    }
+
+    @Test
+    public void test31_2() {
+        String input = "a\ud842\udfb7b \ud83d\ude00";
+        Lexer lexer = new Lexer(new StringReader(input));
+        lexer.setWhitespaceChars(' ').setWordCharRange('a', 'b').setWordCharRange(0x20000, 0x2a6df)
+                .resetRange(0x1f600, 0x1f64f);
+        assertEquals("a\ud842\udfb7b", lexer.nextWord());
+        assertTrue(lexer.hasNextChar());
+        assertEquals("\ud83d\ude00", lexer.peek());
+        assertEquals(0x1f600, lexer.nextCodePoint());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void test31_3() {
+        Lexer lexer = new Lexer(new StringReader("\ud83d\ude00"));
+        lexer.resetRange(0x1f600, 0x1f64f);
+        lexer.nextChar();
+        fail();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test31_4() {
+        Lexer lexer = new Lexer(new StringReader("0123456789"));
+        lexer.setWordCharRange('8', '0');
+        fail();
+    }
+
+    @Test
+    public void test31_5() {
+        Lexer lexer = new Lexer(new StringReader("\u3042\u3044 \u30a2"));
+        lexer.setWhitespaceChars(' ').setWordChars(Character.UnicodeBlock.HIRAGANA)
+                .setLineTerminatorCharRange(0x30a0, 0x30ff);
+        assertEquals("\u3042\u3044", lexer.nextWord());
+        assertTrue(lexer.hasNext());
+        assertFalse(lexer.hasNextInLine());
+        assertEquals('\u30a2', lexer.nextChar());
+    }
+
+    @Test
+    public void test31_7() {
+        // 対になっていないサロゲートは、ワード構成文字の範囲に含めても通常文字です。
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0x3000, 0xffff).whitespaceChars(' ')
+                .build();
+        for (LexerSpec s : new LexerSpec[] { LexerSpec.DEFAULT, spec }) {
+            Lexer lexer = new Lexer(new StringReader("\udc00\udc01\ud800"), s);
+            assertEquals('\udc00', lexer.nextChar());
+            assertEquals('\udc01', lexer.nextChar());
+            assertEquals('\ud800', lexer.nextChar());
+        }
+    }
+
+    @Test
+    public void test31_6() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ')
+                .ordinaryCharRange(0x1f600, 0x1f600).lineTerminatorCharRange(0x1f601, 0x1f601).build();
+        Lexer lexer = new Lexer(new StringReader("\ud83d\ude00 x\ud83d\ude01"), spec);
+        assertEquals("Next: [] CHAR'\ud83d\ude00'", lexer.toString());
+        lexer.next();
+        lexer.next();
+        assertEquals("Next: [] EOL[\ud83d\ude01]", lexer.toString());
+    }
+
+    @Test
+    public void test32_1() throws IOException {
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            Files.writeString(path, "\u5b57\u53e5 \u89e3\u6790\n0", StandardCharsets.UTF_8);
+            LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').lineTerminatorChars('\n').build();
+            try (Lexer lexer = Lexer.open(path, StandardCharsets.UTF_8, spec)) {
+                assertEquals("\u5b57\u53e5", lexer.nextWord());
+                assertEquals("\u89e3\u6790", lexer.nextWord());
+                assertEquals(" ", lexer.skippedWhitespace());
+                assertFalse(lexer.hasNextInLine());
+                assertEquals('\n', lexer.nextChar());
+                assertEquals('0', lexer.nextChar());
+                assertFalse(lexer.hasNext());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void test33_1() {
+        byte[] bytes = "\u5b57\u53e5 abc\n\ud842\udfb7".getBytes(StandardCharsets.UTF_8);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0xc0, 0xff).whitespaceChars(' ').lineTerminatorChars('\n').build();
+        Lexer lexer = new Lexer(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8, spec);
+        assertEquals("\u5b57\u53e5", lexer.nextWord());
+        assertEquals("abc", lexer.nextWord());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals("\ud842\udfb7", lexer.nextWord());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test33_2() {
+        byte[] bytes = {'a', 'b', (byte) 0xe9, ' ', (byte) 0xff, 'c'};
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0xc0, 0xff).whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(ByteBuffer.wrap(bytes), StandardCharsets.ISO_8859_1, spec);
+        assertEquals("ab\u00e9", lexer.nextWord());
+        assertEquals("\u00ffc", lexer.nextWord());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test33_3() {
+        byte[] bytes = {'a', (byte) 0xc3, ' ', 'b', (byte) 0xe3, (byte) 0x81};
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0xc0, 0xff).whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8, spec);
+        assertEquals("a\ufffd", lexer.nextWord());
+        assertEquals("b\ufffd", lexer.nextWord());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test33_4() {
+        String input = "ab\u00e9 c,d\t\n\u5b57\u3000\ud842\udfb7 e\u00ff;\r\n".repeat(50);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0xc0, 0xff)
+                .wordCharRange(0x4e00, 0x9fff).whitespaceChars(' ', '\t', '\u3000').lineTerminatorChars('\r', '\n')
+                .keywords(KeywordTable.of("ab", "e")).build();
+        for (Charset cs : new Charset[] { StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1,
+                StandardCharsets.UTF_8 }) {
+            byte[] bytes = input.getBytes(cs);
+            // 不正なUTF-8のバイト列の後は、デコードした場合と同じトークンを返します。
+            bytes[bytes.length / 2] = (byte) 0xc3;
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 1);
+            direct.put(bytes).position(1);
+            for (ByteBuffer bb : new ByteBuffer[] { ByteBuffer.wrap(bytes, 1, bytes.length - 1), direct }) {
+                Lexer lexer = new Lexer(bb, cs, spec);
+                for (Lexeme lexeme : Lexer.lexBytes(bb, cs, spec).collect(Collectors.toList())) {
+                    assertEquals(lexer.hasNextWord(), lexeme.isWord());
+                    assertEquals(lexer.next(), lexeme.getText());
+                    assertEquals(lexer.skippedWhitespace(), lexeme.getSkippedWhitespace());
+                }
+                assertFalse(lexer.hasNext());
+                assertEquals(1, bb.position());
+            }
+        }
+    }
+
+    @Test
+    public void test34_1() {
+        String line = "ab  c,d\t\n e\r\n";
+        String input = line.repeat(20000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ', '\t')
+                .lineTerminatorChars('\r', '\n').build();
+        Lexer lexer = new Lexer(new StringReader(input), spec);
+        List<Lexeme> lexemes = Lexer.lexParallel(input, spec, new ForkJoinPool(4)).collect(Collectors.toList());
+        assertEquals(20000 * 8, lexemes.size());
+        for (Lexeme lexeme : lexemes) {
+            assertEquals(lexer.hasNextWord(), lexeme.isWord());
+            assertEquals(lexer.next(), lexeme.getText());
+            assertEquals(lexer.skippedWhitespace(), lexeme.getSkippedWhitespace());
+        }
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test34_2() throws IOException {
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            Files.writeString(path, "\u5b57\u53e5 \u89e3\u6790\n".repeat(30000), StandardCharsets.UTF_8);
+            LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').lineTerminatorChars('\n').build();
+            try (Stream<Lexeme> stream = Lexer.lexParallel(path, StandardCharsets.UTF_8, spec)) {
+                Iterator<Lexeme> it = stream.iterator();
+                for (int i = 0; i < 30000; i++) {
+                    assertEquals("\u5b57\u53e5", it.next().getText());
+                    Lexeme lexeme = it.next();
+                    assertEquals("\u89e3\u6790", lexeme.getText());
+                    assertEquals(" ", lexeme.getSkippedWhitespace());
+                    assertFalse(it.next().isWord());
+                }
+                assertFalse(it.hasNext());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void test34_3() {
+        String input = "ab  c,d\t\n e\r\n".repeat(100000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ', '\t')
+                .lineTerminatorChars('\r', '\n').build();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (Stream<Lexeme> stream = Lexer.lexParallel(input, spec, pool)) {
+            Iterator<Lexeme> it = stream.iterator();
+            assertEquals("ab", it.next().getText());
+            // 範囲の字句解析は並列度の2倍までだけ先行します。
+            assertTrue(pool.getQueuedSubmissionCount() <= 4);
+            int n = 1;
+            while (it.hasNext()) {
+                it.next();
+                n++;
+            }
+            assertEquals(100000 * 8, n);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test34_4() throws IOException {
+        // 演算子は行終端文字を含むことがあるため、分割すると逐次の結果と変わります。
+        String input = "abc-\n-".repeat(100000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').lineTerminatorChars('\n')
+                .operators(OperatorTable.of("-\n-")).build();
+        List<String> expected = new ArrayList<>();
+        new Lexer(new StringReader(input), spec).forEachRemaining(expected::add);
+        assertEquals(200000, expected.size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            assertEquals(expected, Lexer.lexParallel(input, spec, pool).map(Lexeme::getText)
+                    .collect(Collectors.toList()));
+            Files.writeString(path, input, StandardCharsets.UTF_8);
+            try (Stream<Lexeme> stream = Lexer.lexParallel(path, StandardCharsets.UTF_8, spec, pool)) {
+                assertEquals(expected, stream.map(Lexeme::getText).collect(Collectors.toList()));
+            }
+            assertEquals(expected, new Lexer(input, spec).tokens().parallel().collect(Collectors.toList()));
+        } finally {
+            Files.delete(path);
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test35_1() {
+        String input = "ab c,d\n e\u00e9 \ud842\udfb7f\n".repeat(10000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0xe0, 0xff)
+                .wordCharRange(0x20000, 0x2ffff).whitespaceChars(' ').lineTerminatorChars('\n').build();
+        List<String> expected = new ArrayList<>();
+        Lexer lexer = new Lexer(new StringReader(input), spec);
+        lexer.forEachRemaining(expected::add);
+        assertEquals(expected, new Lexer(input, spec).tokens().parallel().collect(Collectors.toList()));
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, new Lexer(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8, spec).tokens().parallel()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void test35_2() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer("ab cd ef gh", spec);
+        assertEquals("ab", lexer.next());
+        Spliterator<String> suffix = lexer.tokens().spliterator();
+        assertTrue(suffix.hasCharacteristics(Spliterator.ORDERED | Spliterator.NONNULL));
+        Spliterator<String> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        List<String> tokens = new ArrayList<>();
+        prefix.forEachRemaining(tokens::add);
+        suffix.forEachRemaining(tokens::add);
+        assertEquals(List.of("cd", "ef", "gh"), tokens);
+        assertNull(new Lexer(new StringReader("ab cd"), spec).tokens().spliterator().trySplit());
+    }
+
+    @Test
+    public void test36_1() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ')
+                .lineTerminatorChars('\r', '\n').build();
+        Lexer lexer = new Lexer(new StringReader("ab\r\n cd ef\n\r\rg"), spec);
+        assertEquals(1, lexer.lineNumber());
+        assertEquals(1, lexer.columnNumber());
+        long[][] expected = {
+                { 0, 1, 1 }, { 2, 1, 3 }, { 3, 1, 4 }, { 5, 2, 2 }, { 8, 2, 5 }, { 10, 2, 7 }, { 11, 3, 1 },
+                { 12, 4, 1 }, { 13, 5, 1 } };
+        for (long[] position : expected) {
+            lexer.advance();
+            assertEquals(position[0], lexer.offset());
+            assertEquals(position[1], lexer.lineNumber());
+            assertEquals(position[2], lexer.columnNumber());
+        }
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test36_2() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').lineTerminatorChars('\n')
+                .build();
+        String line = "abc  de\n";
+        Lexer lexer = new Lexer(new StringReader(line.repeat(5000)), spec);
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("abc", lexer.next());
+            assertEquals(i * line.length(), lexer.offset());
+            assertEquals(i + 1, lexer.lineNumber());
+            assertEquals("de", lexer.next());
+            assertEquals(i * line.length() + 5, lexer.offset());
+            assertEquals(6, lexer.columnNumber());
+            lexer.advance();
+        }
+        lexer.setPositionTracking(false);
+        assertEquals(5000, lexer.lineNumber());
+    }
+
+    @Test
+    public void test37_1() {
+        String input = "abc  d,\n e\u00e9 \ud842\udfb7\n".repeat(3000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').lineTerminatorChars('\n')
+                .build();
+        Lexer expected = new Lexer(new StringReader(input), spec);
+        Lexer lexer = new Lexer(new StringReader(input), spec);
+        TokenBatch batch = new TokenBatch(100);
+        int n;
+        while ((n = lexer.nextBatch(batch)) > 0) {
+            assertEquals(n, batch.size());
+            for (int i = 0; i < n; i++) {
+                int kind = expected.hasNextWord() ? TokenBatch.WORD
+                        : expected.hasNextInLine() ? TokenBatch.CHAR : TokenBatch.LINE_TERMINATOR;
+                assertEquals(kind, batch.kinds()[i]);
+                assertEquals(expected.next(), batch.text(i));
+                assertEquals(expected.offset(), batch.starts()[i]);
+                assertEquals(expected.tokenView().length(), batch.lengths()[i]);
+                assertEquals(expected.skippedWhitespace().length(), batch.whitespaceLengths()[i]);
+            }
+            assertEquals(expected.skippedWhitespace(), lexer.skippedWhitespace());
+            assertEquals(expected.lineNumber(), lexer.lineNumber());
+        }
+        assertFalse(expected.hasNext());
+        assertEquals(0, lexer.nextBatch(batch));
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void test37_2() {
+        String input = "bdxybdxy cgxycgx,\n".repeat(3000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').lineTerminatorChars('\n')
+                .build();
+        List<String> expected = new ArrayList<>();
+        new Lexer(new StringReader(input), spec).forEachRemaining(expected::add);
+        Lexer lexer = new Lexer(new StringReader(input), spec);
+        TokenBatch batch = new TokenBatch(2);
+        int i = 0;
+        int n;
+        while ((n = lexer.nextBatch(batch)) > 0) {
+            int k = Math.min(16, expected.size() - i - n - 1);
+            if (k >= 0) {
+                assertEquals(expected.get(i + n + k), lexer.peek(k));
+            }
+            for (int j = 0; j < n; j++) {
+                assertEquals(expected.get(i + j), batch.text(j));
+            }
+            i += n;
+        }
+        assertEquals(expected.size(), i);
+    }
+
+    @Test
+    public void test38_1() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        WordCache cache = new WordCache(64);
+        Lexer lexer = new Lexer(new StringReader("if x if y x ,"), spec).setWordCache(cache);
+        String first = lexer.next();
+        assertEquals("if", first);
+        String x = lexer.next();
+        assertSame(first, lexer.next());
+        assertEquals("y", lexer.next());
+        assertSame(x, lexer.peekWord());
+        assertSame(x, lexer.next());
+        assertEquals(",", lexer.next());
+        assertEquals(2, cache.hitCount());
+        assertEquals(3, cache.missCount());
+        assertEquals(3, cache.size());
+        assertEquals(64, cache.capacity());
+    }
+
+    @Test
+    public void test38_2() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        WordCache lru = new WordCache(2);
+        WordCache none = new WordCache(2, WordCache.Eviction.NONE);
+        String input = "a b c d a b c d";
+        new Lexer(new StringReader(input), spec).setWordCache(lru).forEachRemaining(s -> {
+        });
+        new Lexer(new StringReader(input), spec).setWordCache(none).forEachRemaining(s -> {
+        });
+        assertEquals(2, lru.size());
+        assertEquals(8, lru.hitCount() + lru.missCount());
+        assertEquals(lru.missCount() - 2, lru.evictionCount());
+        assertEquals(2, none.size());
+        assertEquals(2, none.hitCount());
+        assertEquals(0, none.evictionCount());
+        lru.clear();
+        assertEquals(0, lru.size());
+        assertEquals(0, lru.missCount());
+    }
+
+    @Test
+    public void test39_1() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(new StringReader("int  x = y;"), spec);
+        assertEquals("int", lexer.peek(0));
+        assertEquals("x", lexer.peekWord(1));
+        assertEquals('=', lexer.peekChar(2));
+        assertEquals("y", lexer.peek(3));
+        assertEquals(';', lexer.peekChar(4));
+        assertEquals("int", lexer.next());
+        assertEquals("  ", lexer.trailingWhitespace());
+        assertEquals("x", lexer.next());
+        assertEquals("  ", lexer.skippedWhitespace());
+        assertEquals(';', lexer.peekChar(2));
+        assertEquals(" ", lexer.trailingWhitespace());
+        assertEquals('=', lexer.nextChar());
+        assertEquals("y", lexer.nextWord());
+        assertEquals(9, lexer.offset());
+        assertEquals(';', lexer.nextChar());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void test39_2() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(new StringReader("a b"), spec);
+        lexer.peek(2);
+        fail();
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void test39_3() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(new StringReader("a b"), spec);
+        lexer.peekChar(1);
+        fail();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test39_4() {
+        Lexer lexer = new Lexer(new StringReader("a b"));
+        lexer.peek(17);
+        fail();
+    }
+
+    @Test
+    public void test39_6() {
+        String input = "a\nb\r\nc d\n\ne";
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ')
+                .lineTerminatorChars('\r', '\n').build();
+        List<long[]> expected = new ArrayList<>();
+        Lexer lexer = new Lexer(new StringReader(input), spec);
+        while (lexer.hasNext()) {
+            lexer.advance();
+            expected.add(new long[] { lexer.offset(), lexer.lineNumber(), lexer.columnNumber() });
+        }
+        for (int k = 1; k <= 3; k++) {
+            lexer = new Lexer(new StringReader(input), spec);
+            for (int i = 0; i < expected.size(); i++) {
+                long[] position = expected.get(i);
+                if (i + k < expected.size()) {
+                    lexer.peek(k);
+                }
+                lexer.advance();
+                assertEquals(position[0], lexer.offset());
+                assertEquals(position[1], lexer.lineNumber());
+                assertEquals(position[2], lexer.columnNumber());
+            }
+            assertFalse(lexer.hasNext());
+        }
+    }
+
+    @Test
+    public void test39_5() {
+        String input = "abc de,\n".repeat(4000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').lineTerminatorChars('\n')
+                .build();
+        List<String> tokens = new ArrayList<>();
+        new Lexer(new StringReader(input), spec).forEachRemaining(tokens::add);
+        Lexer lexer = new Lexer(new StringReader(input), spec);
+        for (int i = 0; i < tokens.size(); i++) {
+            int k = Math.min(i % 17, tokens.size() - 1 - i);
+            assertEquals(tokens.get(i + k), lexer.peek(k));
+            assertEquals(tokens.get(i), lexer.next());
+        }
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test40_1() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').lineTerminatorChars('\n')
+                .build();
+        Lexer lexer = new Lexer("ab cd\nef gh", spec);
+        assertEquals("ab", lexer.next());
+        assertEquals("ef", lexer.peek(2));
+        for (String message : new String[] { "x  yz\nw", "abc".repeat(5000) + " q" }) {
+            Lexer expected = new Lexer(new StringReader(message), spec);
+            lexer.rebind(new StringReader(message));
+            assertEquals("", lexer.skippedWhitespace());
+            assertEquals(0, lexer.offset());
+            while (expected.hasNext()) {
+                assertEquals(expected.next(), lexer.next());
+                assertEquals(expected.skippedWhitespace(), lexer.skippedWhitespace());
+                assertEquals(expected.offset(), lexer.offset());
+                assertEquals(expected.lineNumber(), lexer.lineNumber());
+                assertEquals(expected.columnNumber(), lexer.columnNumber());
+            }
+            assertFalse(lexer.hasNext());
+        }
+    }
+
+    @Test
+    public void test41_1() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange('0', '9').wordChars('_')
+                .wordCharRange(0xc0, 0xff).whitespaceChars(' ', '\t').lineTerminatorChars('\n').build();
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String word = "abcdefghijklmnopqrstuvwxyz_0123456789".substring(i % 30) + "\u00e9\u3042".substring(0, i % 3)
+                    + "x".repeat(i);
+            sb.append(" ".repeat(i)).append("\t".repeat(i % 5)).append(word);
+            expected.add(word);
+            if (i % 7 == 0) {
+                sb.append('\n');
+                expected.add("\n");
+            }
+        }
+        Lexer lexer = new Lexer(sb, spec);
+        for (String token : expected) {
+            assertEquals(token, lexer.next());
+        }
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test42_1() {
+        LexerSpec spec = LexerSpec.builder().numberChars().wordChars('e', 'x').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer("12 -9223372036854775808 9223372036854775808 3.25 -1e-3 .5 x 2147483648", spec);
+        assertTrue(lexer.hasNextInt());
+        assertEquals(12, lexer.nextInt());
+        assertTrue(lexer.hasNextLong());
+        assertEquals(Long.MIN_VALUE, lexer.nextLong());
+        assertFalse(lexer.hasNextLong());
+        assertTrue(lexer.hasNextDouble());
+        assertEquals(9223372036854775808.0, lexer.nextDouble(), 0);
+        assertFalse(lexer.hasNextLong());
+        assertEquals(3.25, lexer.nextDouble(), 0);
+        assertEquals(-0.001, lexer.nextDouble(), 0);
+        assertEquals(0.5, lexer.nextDouble(), 0);
+        assertFalse(lexer.hasNextDouble());
+        assertEquals("x", lexer.nextWord());
+        assertTrue(lexer.hasNextLong());
+        assertFalse(lexer.hasNextInt());
+        assertEquals(2147483648L, lexer.nextLong());
+        assertFalse(lexer.hasNextLong());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void test42_2() {
+        Lexer lexer = new Lexer(new StringReader("99999999999999999999")).setNumberChars();
+        try {
+            lexer.nextLong();
+        } finally {
+            assertEquals("99999999999999999999", lexer.next());
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void test42_3() {
+        Lexer lexer = new Lexer(new StringReader("1e400")).setNumberChars().setWordChars('e');
+        lexer.nextDouble();
+        fail();
+    }
+
+    @Test
+    public void test43_1() {
+        TokenRules rules = TokenRules.builder()
+                .rule("IF", "if")
+                .rule("IDENT", "[a-z]+")
+                .rule("ARROW", "->")
+                .rule("MINUS", "-")
+                .rule("NUMBER", "\\d+(\\.\\d+)?")
+                .build();
+        LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').lineTerminatorChars('\n').rules(rules).build();
+        Lexer lexer = new Lexer("if iffy->-3.14.x ;\nif", spec);
+        assertEquals(0, lexer.peekRuleId());
+        assertEquals(4, lexer.peekRuleId(4));
+        assertEquals("3.14", lexer.peek(4));
+        assertEquals("if", lexer.nextWord());
+        assertEquals(0, lexer.ruleId());
+        assertEquals("iffy", lexer.nextWord());
+        assertEquals(1, lexer.ruleId());
+        assertEquals("->", lexer.next());
+        assertEquals(2, lexer.ruleId());
+        assertEquals("-", lexer.next());
+        assertEquals(3, lexer.ruleId());
+        assertEquals(3.14, lexer.nextDouble(), 0);
+        assertEquals(4, lexer.ruleId());
+        assertEquals('.', lexer.nextChar());
+        assertEquals(-1, lexer.ruleId());
+        assertEquals("x", lexer.next());
+        assertEquals(1, lexer.ruleId());
+        assertEquals(';', lexer.nextChar());
+        assertEquals(-1, lexer.peekRuleId());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals("if", lexer.next());
+        assertEquals(0, lexer.ruleId());
+        assertEquals(2, lexer.lineNumber());
+        assertEquals(1, lexer.columnNumber());
+    }
+
+    @Test
+    public void test43_2() {
+        TokenRules rules = TokenRules.builder()
+                .rule("COMMENT", "/\\*([^*]|\\*+[^*/])*\\*+/")
+                .rule("SLASH", "/")
+                .build();
+        LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').wordCharRange('a', 'z').rules(rules).build();
+        String comment = "/* " + "x".repeat(20000) + " */";
+        Lexer lexer = new Lexer(new BufferedReader(new StringReader("a /b " + comment + " /* c"), 16), spec);
+        assertEquals("a", lexer.next());
+        assertEquals(-1, lexer.ruleId());
+        assertEquals("/", lexer.next());
+        assertEquals(1, lexer.ruleId());
+        assertEquals("b", lexer.next());
+        assertEquals(comment, lexer.next());
+        assertEquals(0, lexer.ruleId());
+        assertEquals(5, lexer.offset());
+        assertEquals("/", lexer.next());
+        assertEquals('*', lexer.nextChar());
+        assertEquals("c", lexer.next());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test43_3() {
+        Lexer lexer = new Lexer("a\nb\nc", LexerSpec.builder().wordCharRange('a', 'z').lineTerminatorChars('\n').build());
+        lexer.peek(4);
+        int[] lines = { 1, 1, 2, 2, 3 };
+        for (int expected : lines) {
+            lexer.next();
+            assertEquals(expected, lexer.lineNumber());
+        }
+    }
+
+    @Test
+    public void test44_1() {
+        KeywordTable keywords = KeywordTable.of("if", "else", "return");
+        LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').wordCharRange('a', 'z').keywords(keywords).build();
+        Lexer lexer = new Lexer("if x return elsewhere else", spec);
+        assertEquals(0, lexer.peekKeywordId());
+        assertEquals(2, lexer.peekKeywordId(2));
+        assertEquals(-1, lexer.peekKeywordId(3));
+        assertSame(keywords.keyword(0), lexer.next());
+        assertEquals(0, lexer.keywordId());
+        lexer.advance();
+        assertEquals(-1, lexer.keywordId());
+        assertSame(keywords.keyword(2), lexer.next());
+        assertEquals(2, lexer.keywordId());
+        assertEquals("elsewhere", lexer.next());
+        assertEquals(-1, lexer.keywordId());
+        lexer.advance();
+        assertEquals(1, lexer.keywordId());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test44_2() {
+        KeywordTable keywords = KeywordTable.of("if", "->");
+        TokenRules rules = TokenRules.builder().rule("ARROW", "->").build();
+        Lexer lexer = new Lexer(new StringReader("if->if")).setTokenRules(rules).setKeywords(keywords);
+        assertEquals('i', lexer.nextChar());
+        assertEquals(-1, lexer.keywordId());
+        lexer.setWordCharRange('a', 'z');
+        lexer.advance();
+        assertEquals("->", lexer.next());
+        assertEquals(1, lexer.keywordId());
+        assertEquals(0, lexer.ruleId());
+        assertEquals("if", lexer.next());
+        assertEquals(0, lexer.keywordId());
+        assertEquals(-1, lexer.ruleId());
+    }
+
+    @Test
+    public void test45_1() {
+        OperatorTable operators = OperatorTable.of("=", "==", "->", "::", "<", "<=", "<<=");
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .wordCharRange('a', 'z')
+                .operators(operators)
+                .build();
+        Lexer lexer = new Lexer("a==b->c::d<<==e;-<", spec);
+        assertEquals("a", lexer.nextWord());
+        assertTrue(lexer.hasNextOperator());
+        assertEquals(1, lexer.peekOperatorId());
+        assertSame(operators.operator(1), lexer.nextOperator());
+        assertEquals(1, lexer.operatorId());
+        assertEquals("b", lexer.next());
+        assertEquals(-1, lexer.operatorId());
+        assertEquals("->", lexer.next());
+        assertEquals(2, lexer.operatorId());
+        assertEquals("c", lexer.next());
+        assertEquals("::", lexer.nextOperator());
+        assertEquals("d", lexer.next());
+        assertEquals("<<=", lexer.peek(0));
+        assertEquals("=", lexer.peek(1));
+        assertEquals(6, lexer.peekOperatorId());
+        assertEquals("<<=", lexer.nextOperator());
+        assertEquals("=", lexer.nextOperator());
+        assertEquals("e", lexer.next());
+        assertEquals(';', lexer.nextChar());
+        assertEquals(-1, lexer.operatorId());
+        assertEquals('-', lexer.nextChar());
+        assertEquals(4, lexer.peekOperatorId());
+        assertEquals("<", lexer.nextOperator());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void test45_2() {
+        Lexer lexer = new Lexer(new StringReader("=="));
+        lexer.setOperators(OperatorTable.of("=="));
+        try {
+            lexer.nextChar();
+        } finally {
+            assertEquals("==", lexer.next());
+        }
+    }
+
+    @Test
+    public void test45_3() {
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .lineTerminatorChars('\n')
+                .wordCharRange('a', 'z')
+                .operators(OperatorTable.of("!=", "&&"))
+                .build();
+        Lexer lexer = new Lexer(new BufferedReader(new StringReader("a != b &&\n!c"), 1), spec);
+        TokenBatch batch = new TokenBatch(16);
+        assertEquals(7, lexer.nextBatch(batch));
+        int[] kinds = batch.kinds();
+        assertEquals(TokenBatch.OPERATOR, kinds[1]);
+        assertEquals(TokenBatch.OPERATOR, kinds[3]);
+        assertEquals(TokenBatch.LINE_TERMINATOR, kinds[4]);
+        assertEquals(TokenBatch.CHAR, kinds[5]);
+        assertEquals("&&", batch.text(3).toString());
+    }
+
+    @Test
+    public void test46_1() {
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .lineTerminatorChars('\n')
+                .wordCharRange('a', 'z')
+                .quoteChars('"', '\'')
+                .build();
+        Lexer lexer = new Lexer("say \"a \\\"b\\\" \\tc\" 'it''s' \"open\n\"", spec);
+        assertEquals("say", lexer.next());
+        assertTrue(lexer.hasNextQuoted());
+        assertEquals("\"a \\\"b\\\" \\tc\"", lexer.peek());
+        assertEquals("a \"b\" \tc", lexer.nextQuoted());
+        assertEquals("\"a \\\"b\\\" \\tc\"", lexer.tokenView().toString());
+        assertEquals("it", lexer.nextQuoted());
+        assertEquals("s", lexer.nextQuoted());
+        assertEquals("\"open", lexer.peek());
+        assertEquals("open", lexer.nextQuoted());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals(1, lexer.lineNumber());
+        assertEquals("", lexer.nextQuoted());
+        assertEquals(2, lexer.lineNumber());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test46_2() {
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .lineTerminatorChars('\n')
+                .wordCharRange('a', 'z')
+                .lineComment("//")
+                .blockComment("/*", "*/")
+                .build();
+        Lexer lexer = new Lexer(new BufferedReader(new StringReader("a /* x\n** y */ b // c */\n/d/**/e /* f"), 2), spec);
+        assertEquals("a", lexer.next());
+        assertEquals("b", lexer.next());
+        assertEquals(" /* x\n** y */ ", lexer.skippedWhitespace());
+        assertEquals(2, lexer.lineNumber());
+        assertEquals(9, lexer.columnNumber());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals(" // c */", lexer.skippedWhitespace());
+        assertEquals('/', lexer.nextChar());
+        assertEquals(3, lexer.lineNumber());
+        assertEquals("d", lexer.next());
+        assertEquals("e", lexer.next());
+        assertEquals("/**/", lexer.skippedWhitespace());
+        assertFalse(lexer.hasNext());
+        assertEquals(" /* f", lexer.trailingWhitespace());
+    }
+
+    @Test
+    public void test46_3() {
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .lineTerminatorChars('\n', '\r')
+                .wordCharRange('a', 'z')
+                .lineComment("#")
+                .blockComment("{-", "-}")
+                .reportComments(true)
+                .build();
+        Lexer lexer = new Lexer("a {- x\r\ny -} b # c\nd {- e", spec);
+        assertEquals("a", lexer.next());
+        assertTrue(lexer.hasNextComment());
+        assertEquals("{- x\r\ny -}", lexer.next());
+        assertEquals(1, lexer.lineNumber());
+        assertEquals("b", lexer.next());
+        assertEquals(2, lexer.lineNumber());
+        assertEquals("# c", lexer.next());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals("d", lexer.next());
+        assertEquals(3, lexer.lineNumber());
+        assertEquals("{- e", lexer.next());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test46_4() {
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .wordCharRange('a', 'z')
+                .quoteChars('"')
+                .lineComment("//")
+                .reportComments(true)
+                .build();
+        Lexer lexer = new Lexer("x \"//\" // \"y\"", spec);
+        TokenBatch batch = new TokenBatch(8);
+        assertEquals(3, lexer.nextBatch(batch));
+        assertEquals(TokenBatch.WORD, batch.kinds()[0]);
+        assertEquals(TokenBatch.QUOTED, batch.kinds()[1]);
+        assertEquals(TokenBatch.COMMENT, batch.kinds()[2]);
+        assertEquals("// \"y\"", batch.text(2).toString());
+    }
+
+    @Test
+    public void test47_1() {
+        LexerSpec header = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .lineTerminatorChars('\n')
+                .wordCharRange(0x21, 0x7e)
+                .ordinaryChars(':')
+                .build();
+        LexerSpec spec = LexerSpec.builder()
+                .whitespaceChars(' ')
+                .lineTerminatorChars('\n')
+                .wordCharRange('a', 'z')
+                .mode("header", header)
+                .build();
+        Lexer lexer = new Lexer("key: a-b/c d\nx-y", spec);
+        assertNull(lexer.mode());
+        assertEquals("key", lexer.next());
+        assertEquals("a", lexer.peek(1));
+        assertEquals(':', lexer.nextChar());
+        lexer.pushMode("header");
+        assertEquals("header", lexer.mode());
+        assertEquals("a-b/c", lexer.next());
+        assertEquals("d", lexer.next());
+        assertEquals('\n', lexer.nextChar());
+        assertEquals("x-y", lexer.peek());
+        lexer.popMode();
+        assertNull(lexer.mode());
+        assertEquals("x", lexer.next());
+        assertEquals('-', lexer.nextChar());
+        assertEquals("y", lexer.next());
+        assertEquals(2, lexer.lineNumber());
+        assertEquals(3, lexer.columnNumber());
+    }
+
+    @Test
+    public void test47_2() {
+        LexerSpec inner = LexerSpec.builder().wordCharRange('0', '9').build();
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').mode("inner", inner).build();
+        Lexer lexer = new Lexer(new StringReader("ab[12[34]cd]ef"), spec);
+        StringBuilder sb = new StringBuilder();
+        while (lexer.hasNext()) {
+            String token = lexer.next();
+            if (token.equals("[")) {
+                lexer.pushMode("inner");
+            } else if (token.equals("]")) {
+                lexer.popMode();
+            }
+            sb.append(token).append(' ');
+        }
+        assertEquals("ab [ 12 [ 34 ] c d ] ef ", sb.toString());
+    }
+
+    @Test
+    public void test47_3() {
+        LexerSpec inner = LexerSpec.builder().wordCharRange('0', '9').build();
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').mode("inner", inner).build();
+        Lexer lexer = new Lexer(new StringReader("ab12"), spec);
+        lexer.setWordCharRange('0', '9');
+        lexer.pushMode("inner");
+        assertEquals("a", lexer.peek(0));
+        lexer.popMode();
+        assertEquals("ab12", lexer.next());
+        lexer.pushMode("inner");
+        lexer.rebind(new StringReader("ab12"));
+        assertNull(lexer.mode());
+        assertEquals("ab12", lexer.next());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test47_4() {
+        new Lexer(new StringReader("")).pushMode("none");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test47_5() {
+        new Lexer(new StringReader("")).popMode();
+    }
+
+    private static List<String> lexRest(Lexer lexer) {
+        List<String> list = new ArrayList<>();
+        while (lexer.hasNext()) {
+            String token = lexer.next();
+            list.add(token + "@" + lexer.offset() + ":" + lexer.lineNumber() + ":" + lexer.columnNumber());
+        }
+        return list;
+    }
+
+    @Test
+    public void test48_1() throws IOException {
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            Files.writeString(path, "ab \u5b57\u53e5 \ud842\udfb7c\r\n\"x y\" de\n".repeat(2000), StandardCharsets.UTF_8);
+            LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0x5000, 0x5fff)
+                    .wordCharRange(0x20000, 0x2ffff).whitespaceChars(' ').lineTerminatorChars('\r', '\n')
+                    .quoteChars('"').build();
+            List<String> expected;
+            try (Lexer lexer = Lexer.open(path, StandardCharsets.UTF_8, spec)) {
+                expected = lexRest(lexer);
+            }
+            for (int k : new int[] { 0, 1, 3, 5, 7, 5000, expected.size() }) {
+                Checkpoint checkpoint;
+                try (Lexer lexer = Lexer.open(path, StandardCharsets.UTF_8, spec)) {
+                    for (int i = 0; i < k; i++) {
+                        lexer.next();
+                    }
+                    if (k + 3 < expected.size()) {
+                        lexer.peek(3);
+                    }
+                    checkpoint = lexer.checkpoint();
+                }
+                assertTrue(checkpoint.getByteOffset() >= 0);
+                checkpoint = Checkpoint.fromByteArray(checkpoint.toByteArray());
+                try (Lexer lexer = Lexer.open(path, StandardCharsets.UTF_8, spec, checkpoint)) {
+                    assertEquals(expected.subList(k, expected.size()), lexRest(lexer));
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void test48_2() throws IOException {
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            String input = "ab <c d> e\nf <g>\n";
+            Files.writeString(path, input, StandardCharsets.UTF_8);
+            LexerSpec inner = LexerSpec.builder().wordCharRange('a', 'z').wordChars('>').whitespaceChars(' ').build();
+            LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ')
+                    .lineTerminatorChars('\n').mode("inner", inner).build();
+            Lexer lexer = new Lexer(new StringReader(input), spec);
+            lexer.next();
+            lexer.next();
+            lexer.pushMode("inner");
+            assertEquals("c", lexer.next());
+            Checkpoint checkpoint = lexer.checkpoint();
+            assertEquals(-1, checkpoint.getByteOffset());
+            assertArrayEquals(new String[] { "inner" }, checkpoint.getModes());
+            assertEquals(checkpoint, Checkpoint.fromByteArray(checkpoint.toByteArray()));
+            try (Lexer resumed = Lexer.open(path, StandardCharsets.UTF_8, spec, checkpoint)) {
+                assertEquals("inner", resumed.mode());
+                assertEquals("d>", resumed.next());
+                assertEquals(6, resumed.offset());
+                resumed.popMode();
+                assertEquals("e", resumed.next());
+                resumed.next();
+                assertEquals("f", resumed.next());
+                assertEquals(2, resumed.lineNumber());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test48_3() throws IOException {
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            Files.writeString(path, "ab cd", StandardCharsets.UTF_8);
+            Lexer lexer = Lexer.open(path, StandardCharsets.UTF_8, LexerSpec.DEFAULT);
+            lexer.next();
+            Checkpoint checkpoint = lexer.checkpoint();
+            lexer.close();
+            LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').build();
+            Lexer.open(path, StandardCharsets.UTF_8, spec, checkpoint);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test48_5() throws IOException {
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            String input = "ab <c <d> e> f\n";
+            Files.writeString(path, input, StandardCharsets.UTF_8);
+            LexerSpec inner = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+            LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ')
+                    .mode("outer", LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build())
+                    .mode("inner", inner).build();
+            Lexer lexer = new Lexer(new StringReader(input), spec);
+            lexer.next();
+            lexer.pushMode("outer");
+            lexer.next();
+            lexer.pushMode("inner");
+            lexer.next();
+            Checkpoint checkpoint = lexer.checkpoint();
+            assertEquals(checkpoint, Checkpoint.fromByteArray(checkpoint.toByteArray()));
+            // スタックの途中のモードだけを変更した仕様では再開できません。
+            LexerSpec changed = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ')
+                    .mode("outer", LexerSpec.builder().wordCharRange('a', 'z').wordChars('>').whitespaceChars(' ').build())
+                    .mode("inner", inner).build();
+            Lexer.open(path, StandardCharsets.UTF_8, changed, Checkpoint.fromByteArray(checkpoint.toByteArray()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test48_4() {
+        Checkpoint.fromByteArray(new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void test49_1() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(new StringReader("abcdefg hi"), spec);
+        lexer.setMaxTokenLength(3, Lexer.LengthPolicy.CHUNK);
+        assertEquals("abc", lexer.next());
+        assertEquals("def", lexer.next());
+        assertEquals(3, lexer.offset());
+        assertEquals("g", lexer.next());
+        assertEquals("", lexer.skippedWhitespace());
+        assertEquals("hi", lexer.next());
+        assertEquals(8, lexer.offset());
+        assertEquals(" ", lexer.skippedWhitespace());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test49_2() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').lineTerminatorChars('\n')
+                .build();
+        Lexer lexer = new Lexer(new StringReader("abcdefg     hi\nj" + " ".repeat(100000)), spec);
+        lexer.setMaxTokenLength(3, Lexer.LengthPolicy.TRUNCATE);
+        lexer.setMaxWhitespaceLength(2, Lexer.LengthPolicy.TRUNCATE);
+        assertEquals("abc", lexer.next());
+        assertEquals("hi", lexer.next());
+        assertEquals("  ", lexer.skippedWhitespace());
+        assertEquals(12, lexer.offset());
+        assertEquals(13, lexer.columnNumber());
+        assertEquals("\n", lexer.next());
+        assertEquals("j", lexer.next());
+        assertEquals(2, lexer.lineNumber());
+        assertEquals(1, lexer.columnNumber());
+        assertFalse(lexer.hasNext());
+        assertEquals("  ", lexer.trailingWhitespace());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void test49_3() {
+        Lexer lexer = new Lexer(new StringReader("ab " + "c".repeat(100000)));
+        lexer.setWordCharRange('a', 'z').setWhitespaceChars(' ');
+        lexer.setMaxTokenLength(1000, Lexer.LengthPolicy.FAIL);
+        assertEquals("ab", lexer.next());
+        lexer.hasNext();
+    }
+
+    @Test
+    public void test49_4() {
+        LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').quoteChars('"').blockComment("/*", "*/")
+                .reportComments(true).build();
+        Lexer lexer = new Lexer(new StringReader("\"abcdef\" /*ghijkl*/ x"), spec);
+        lexer.setMaxTokenLength(4, Lexer.LengthPolicy.CHUNK);
+        assertEquals("abc", lexer.nextQuoted());
+        assertEquals("/*gh", lexer.next());
+        assertEquals(9, lexer.offset());
+        assertEquals("x", lexer.next());
+        assertEquals(20, lexer.offset());
+    }
+
+    @Test
+    public void test49_5() {
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(new StringReader("ab      cd ef"), spec);
+        lexer.setMaxWhitespaceLength(1, Lexer.LengthPolicy.TRUNCATE);
+        TokenBatch batch = new TokenBatch(8);
+        assertEquals(3, lexer.nextBatch(batch));
+        assertEquals(0, batch.starts()[0]);
+        assertEquals(8, batch.starts()[1]);
+        assertEquals(11, batch.starts()[2]);
+        assertEquals("cd", batch.text(1));
+        assertEquals("ef", batch.text(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test49_6() {
+        new Lexer(new StringReader("")).setMaxWhitespaceLength(10, Lexer.LengthPolicy.CHUNK);
+    }
+
+    @Test
+    public void test50_1() throws IOException {
+        Charset sjis = Charset.forName("Shift_JIS");
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            Files.writeString(path, "identifier \u5b57\u53e5\uff71\uff72 abcdefghijklmnop\r\n\"\u89e3 \u6790\" z\n".repeat(2000), sjis);
+            LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0x5000, 0x8fff)
+                    .wordCharRange(0xff61, 0xff9f).whitespaceChars(' ').lineTerminatorChars('\r', '\n')
+                    .quoteChars('"').build();
+            List<String> expected = lexRest(new Lexer(Files.newBufferedReader(path, sjis), spec));
+            try (Lexer lexer = Lexer.open(path, sjis, spec)) {
+                assertEquals(expected, lexRest(lexer));
+            }
+            Checkpoint checkpoint;
+            try (Lexer lexer = Lexer.open(path, sjis, spec)) {
+                for (int i = 0; i < 5001; i++) {
+                    lexer.next();
+                }
+                checkpoint = lexer.checkpoint();
+            }
+            assertTrue(checkpoint.getByteOffset() >= 0);
+            try (Lexer lexer = Lexer.open(path, sjis, spec, checkpoint)) {
+                assertEquals(expected.subList(5001, expected.size()), lexRest(lexer));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void test50_2() {
+        String input = "abcdefghijklmnopqrstuvwxyz #abcdefghijklmnopq abcdefghij#klmnop abcdefgh\n";
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0xc0, 0xff)
+                .wordCharRange(0xff61, 0xff9f).whitespaceChars(' ').lineTerminatorChars('\n').build();
+        Charset[] charsets = { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, Charset.forName("Shift_JIS") };
+        char[] chars = { '\u00e9', '\u00e9', '\uff71' };
+        for (int i = 0; i < charsets.length; i++) {
+            String s = input.replace('#', chars[i]);
+            List<String> expected = lexRest(new Lexer(new StringReader(s), spec));
+            byte[] bytes = s.getBytes(charsets[i]);
+            assertEquals(expected, lexRest(new Lexer(new ByteArrayInputStream(bytes), charsets[i], spec)));
+        }
+        byte[] bytes = "abcdefghijklmnop\u00e9".getBytes(StandardCharsets.ISO_8859_1);
+        Lexer lexer = new Lexer(ByteBuffer.wrap(bytes), StandardCharsets.US_ASCII, spec);
+        assertEquals("abcdefghijklmnop\ufffd", lexer.next());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test
+    public void test50_3() {
+        byte[] bytes = {'a', 'b', ' ', 'c', (byte) 0xff, 'd', ' ', 'e'};
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        Lexer lexer = new Lexer(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT), spec);
+        assertEquals("ab", lexer.next());
+        try {
+            lexer.next();
+            fail();
+        } catch (UncheckedIOException ex) {
+            assertTrue(ex.getCause() instanceof MalformedInputException);
+            assertEquals(1, ((MalformedInputException) ex.getCause()).getInputLength());
+        }
+    }
+
+    @Test
+    public void test50_4() throws IOException {
+        Charset sjis = Charset.forName("Shift_JIS");
+        Path path = Files.createTempFile("LexerTest", ".txt");
+        try {
+            Files.write(path, new byte[] {'a', (byte) 0x80, 'b', ' ', (byte) 0x88, (byte) 0x9f, (byte) 0xff, ' ',
+                    (byte) 0xb1, (byte) 0x81});
+            LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').wordCharRange(0x4e00, 0x9fff)
+                    .wordCharRange(0xff61, 0xff9f).whitespaceChars(' ').build();
+            try (Lexer lexer = Lexer.open(path, sjis.newDecoder().onMalformedInput(CodingErrorAction.IGNORE), spec)) {
+                assertEquals("ab", lexer.next());
+                assertEquals("\u4e9c", lexer.next());
+                assertEquals("\uff71", lexer.next());
+                assertFalse(lexer.hasNext());
+                assertEquals(-1, lexer.checkpoint().getByteOffset());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
     @Test
     public void testXXX1() {
         System.out.println("com.unitedjiga.common.util.LexerTest.testXXX1()");
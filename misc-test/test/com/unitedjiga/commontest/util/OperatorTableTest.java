@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.commontest.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.unitedjiga.common.util.OperatorTable;
+
+/**
+ *
+ * @author Junji Mikami
+ */
+public class OperatorTableTest {
+
+    @Test
+    public void test1() {
+        OperatorTable table = OperatorTable.of("<", "<=", "<<=", "::", "≠");
+        assertEquals(5, table.size());
+        assertEquals("<<=", table.operator(2));
+        assertEquals(0, table.operatorId("<"));
+        assertEquals(1, table.operatorId("<="));
+        assertEquals(2, table.operatorId("<<="));
+        assertEquals(3, table.operatorId("::"));
+        assertEquals(4, table.operatorId("≠"));
+        assertEquals(-1, table.operatorId("<<"));
+        assertEquals(-1, table.operatorId(":"));
+        assertEquals(-1, table.operatorId("<=="));
+        assertEquals(-1, table.operatorId(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test2_1() {
+        OperatorTable.of("==", "==");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test2_2() {
+        OperatorTable.of("");
+    }
+}
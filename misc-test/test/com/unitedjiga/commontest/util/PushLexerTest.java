@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.commontest.util;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.unitedjiga.common.util.KeywordTable;
+import com.unitedjiga.common.util.Lexeme;
+import com.unitedjiga.common.util.Lexer;
+import com.unitedjiga.common.util.LexerSpec;
+import com.unitedjiga.common.util.OperatorTable;
+import com.unitedjiga.common.util.PushLexer;
+import com.unitedjiga.common.util.TokenRules;
+
+/**
+ *
+ * @author Junji Mikami
+ */
+public class PushLexerTest {
+
+    private static final LexerSpec SPEC = LexerSpec.builder()
+            .whitespaceChars(' ')
+            .lineTerminatorChars('\n')
+            .wordCharRange('a', 'z')
+            .wordCharRange(0x20000, 0x2ffff)
+            .build();
+
+    @Test
+    public void test1() {
+        List<Lexeme> lexemes = new ArrayList<>();
+        PushLexer lexer = new PushLexer(SPEC, lexemes::add);
+        lexer.feed(CharBuffer.wrap("ab  c"));
+        assertEquals(1, lexemes.size());
+        assertEquals("ab", lexemes.get(0).getText());
+        lexer.feed(CharBuffer.wrap("d, e \ud842"));
+        assertEquals(4, lexemes.size());
+        assertEquals("cd", lexemes.get(1).getText());
+        assertEquals("  ", lexemes.get(1).getSkippedWhitespace());
+        lexer.feed(CharBuffer.wrap("\udfb7\n "));
+        assertEquals(6, lexemes.size());
+        assertEquals("e", lexemes.get(3).getText());
+        assertEquals("\ud842\udfb7", lexemes.get(4).getText());
+        assertTrue(lexemes.get(4).isWord());
+        assertEquals("\n", lexemes.get(5).getText());
+        assertFalse(lexemes.get(5).isWord());
+        lexer.endOfInput();
+        assertEquals(6, lexemes.size());
+        assertEquals(" ", lexer.trailingWhitespace());
+    }
+
+    @Test
+    public void test2() {
+        String input = "int x = 1;\n  return x  ;\n ";
+        for (int size = 1; size <= input.length(); size++) {
+            List<Lexeme> lexemes = new ArrayList<>();
+            PushLexer lexer = new PushLexer(SPEC, lexemes::add);
+            for (int i = 0; i < input.length(); i += size) {
+                lexer.feed(CharBuffer.wrap(input, i, Math.min(i + size, input.length())));
+            }
+            lexer.endOfInput();
+            Lexer expected = new Lexer(new StringReader(input), SPEC);
+            for (Lexeme lexeme : lexemes) {
+                assertEquals(expected.hasNextWord(), lexeme.isWord());
+                assertEquals(expected.next(), lexeme.getText());
+                assertEquals(expected.skippedWhitespace(), lexeme.getSkippedWhitespace());
+            }
+            assertFalse(expected.hasNext());
+            assertEquals(expected.trailingWhitespace(), lexer.trailingWhitespace());
+        }
+    }
+
+    @Test
+    public void test3() {
+        List<Lexeme> lexemes = new ArrayList<>();
+        PushLexer lexer = new PushLexer(SPEC, lexemes::add);
+        lexer.feed(CharBuffer.wrap("abc"));
+        assertTrue(lexemes.isEmpty());
+        lexer.endOfInput();
+        assertEquals(1, lexemes.size());
+        assertTrue(lexer.isEnded());
+        lexer.reset();
+        lexer.feed(CharBuffer.wrap("x "));
+        assertEquals("x", lexemes.get(1).getText());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test4() {
+        PushLexer lexer = new PushLexer(SPEC, lexeme -> {
+        });
+        lexer.endOfInput();
+        lexer.feed(CharBuffer.wrap("a"));
+        fail();
+    }
+
+    @Test
+    public void test5() {
+        LexerSpec[] specs = {
+                LexerSpec.builder().quoteChars('"').build(),
+                LexerSpec.builder().lineComment("//").build(),
+                LexerSpec.builder().blockComment("/*", "*/").build(),
+                LexerSpec.builder().rules(TokenRules.builder().rule("ARROW", "->").build()).build(),
+                LexerSpec.builder().operators(OperatorTable.of("==")).build() };
+        for (LexerSpec spec : specs) {
+            try {
+                new PushLexer(spec, lexeme -> {
+                });
+                fail();
+            } catch (IllegalArgumentException ex) {
+                // 期待どおりです。
+            }
+        }
+    }
+
+    @Test
+    public void test6() {
+        LexerSpec spec = LexerSpec.builder().whitespaceChars(' ').wordCharRange('a', 'z')
+                .keywords(KeywordTable.of("if", "else")).build();
+        List<Lexeme> lexemes = new ArrayList<>();
+        PushLexer lexer = new PushLexer(spec, lexemes::add);
+        lexer.feed(CharBuffer.wrap("if x el"));
+        lexer.feed(CharBuffer.wrap("se y"));
+        lexer.endOfInput();
+        List<String> expected = new ArrayList<>();
+        new Lexer(new StringReader("if x else y"), spec).forEachRemaining(expected::add);
+        List<String> actual = new ArrayList<>();
+        lexemes.forEach(lexeme -> actual.add(lexeme.getText()));
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.commontest.util;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.unitedjiga.common.parsing.Tokenizer;
+import com.unitedjiga.common.parsing.TokenizerFactory;
+import com.unitedjiga.common.util.Lexer;
+import com.unitedjiga.common.util.LexerSpec;
+import com.unitedjiga.common.util.ReadAheadReader;
+
+/**
+ *
+ * @author Junji Mikami
+ */
+public class ReadAheadReaderTest {
+
+    /**
+     * 1回の読み込みで少しずつ返し、指定の位置で入出力エラーをスローするReaderです。
+     */
+    private static class SlowReader extends Reader {
+        private final String s;
+        private final int failAt;
+        private final long delayMillis;
+        private int pos;
+
+        SlowReader(String s, int failAt, long delayMillis) {
+            this.s = s;
+            this.failAt = failAt;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (pos == failAt) {
+                throw new IOException("fail");
+            }
+            if (pos == s.length()) {
+                return -1;
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            int n = Math.min(Math.min(len, 7), s.length() - pos);
+            if (failAt >= 0) {
+                n = Math.min(n, failAt - pos);
+            }
+            s.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void test1() throws IOException {
+        String input = "ab cd\nef".repeat(1000);
+        StringBuilder sb = new StringBuilder();
+        try (ReadAheadReader r = new ReadAheadReader(new SlowReader(input, -1, 0), 2, 16,
+                Executors.defaultThreadFactory())) {
+            char[] cbuf = new char[5];
+            int n;
+            while ((n = r.read(cbuf, 0, cbuf.length)) >= 0) {
+                sb.append(cbuf, 0, n);
+            }
+            assertEquals(-1, r.read());
+        }
+        assertEquals(input, sb.toString());
+    }
+
+    @Test
+    public void test2() throws IOException {
+        String input = "ab cd\nef ".repeat(5000);
+        LexerSpec spec = LexerSpec.builder().wordCharRange('a', 'z').whitespaceChars(' ').build();
+        List<String> expected = new ArrayList<>();
+        new Lexer(new StringReader(input), spec).forEachRemaining(expected::add);
+        List<String> actual = new ArrayList<>();
+        try (ReadAheadReader r = new ReadAheadReader(new SlowReader(input, -1, 0), 4, Thread::new);
+                Lexer lexer = new Lexer(r, spec)) {
+            lexer.forEachRemaining(actual::add);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void test3() throws IOException {
+        String input = "abc def";
+        StringBuilder sb = new StringBuilder();
+        try (ReadAheadReader r = new ReadAheadReader(new SlowReader(input, -1, 20), 1, Thread::new);
+                Tokenizer tzer = TokenizerFactory.newInstance().createTokenizer(r)) {
+            while (tzer.hasNext()) {
+                sb.append(tzer.next().getValue());
+            }
+            assertTrue(r.stallCount() > 0);
+            assertTrue(r.stallNanos() > 0);
+        }
+        assertEquals(input, sb.toString());
+    }
+
+    @Test
+    public void test4() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (ReadAheadReader r = new ReadAheadReader(new SlowReader("abcdefghij", 9, 0), 2, Thread::new)) {
+            int c;
+            while ((c = r.read()) >= 0) {
+                sb.append((char) c);
+            }
+            fail();
+        } catch (IOException ex) {
+            assertEquals("fail", ex.getMessage());
+        }
+        assertEquals("abcdefghi", sb.toString());
+    }
+
+    @Test(expected = IOException.class)
+    public void test5() throws IOException {
+        ReadAheadReader r = new ReadAheadReader(new StringReader("abc"), 2, Thread::new);
+        r.close();
+        r.read();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test6() {
+        new ReadAheadReader(new StringReader(""), 0, Thread::new);
+    }
+
+    @Test(timeout = 10000)
+    public void test7() throws IOException {
+        Reader in = new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                throw new UncheckedIOException(new IOException("fail"));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (ReadAheadReader r = new ReadAheadReader(in, 2, Thread::new)) {
+            r.read();
+            fail();
+        } catch (UncheckedIOException ex) {
+            assertEquals("fail", ex.getCause().getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void test8() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        Reader in = new Reader() {
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                // 割り込みに応じない読み込みです。
+                reading.countDown();
+                for (;;) {
+                    try {
+                        release.await();
+                        return -1;
+                    } catch (InterruptedException ex) {
+                        continue;
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        ReadAheadReader r = new ReadAheadReader(in, 2, Thread::new);
+        reading.await();
+        r.close();
+        assertEquals(1, closed.getCount());
+        release.countDown();
+        closed.await();
+    }
+}
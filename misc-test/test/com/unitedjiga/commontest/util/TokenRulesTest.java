@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.commontest.util;
+
+import static org.junit.Assert.*;
+
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+import com.unitedjiga.common.util.Lexer;
+import com.unitedjiga.common.util.LexerSpec;
+import com.unitedjiga.common.util.TokenRules;
+
+/**
+ *
+ * @author Junji Mikami
+ */
+public class TokenRulesTest {
+
+    @Test
+    public void test1() {
+        TokenRules rules = TokenRules.builder()
+                .rule("IF", "if")
+                .rule("IDENT", "[A-Za-z_]\\w*")
+                .rule("NUMBER", "\\d+(\\.\\d+)?")
+                .build();
+        assertEquals(3, rules.size());
+        assertEquals("IDENT", rules.name(1));
+        assertEquals(2, rules.ruleId("NUMBER"));
+        assertEquals(-1, rules.ruleId("STRING"));
+    }
+
+    @Test
+    public void test2() {
+        // (a|b)*abb の最小DFAは4状態
+        TokenRules rules = TokenRules.builder().rule("X", "(a|b)*abb").build();
+        assertEquals(4, rules.stateCount());
+        TokenRules same = TokenRules.builder().rule("X", "[ab]*a(b){2}").build();
+        assertEquals(4, same.stateCount());
+    }
+
+    @Test
+    public void test3() {
+        TokenRules rules = TokenRules.builder()
+                .rule("HEX", "0x[0-9a-fA-F]{1,4}")
+                .rule("ESC", "\\x41\\u0042[^\\s]")
+                .rule("ANY", "(?:.)")
+                .build();
+        Lexer lexer = new Lexer("0x1fFff ABc\té", LexerSpec.builder().rules(rules).build());
+        assertEquals("0x1fFf", lexer.next());
+        assertEquals(0, lexer.ruleId());
+        assertEquals("f", lexer.next());
+        assertEquals(2, lexer.ruleId());
+        assertEquals(" ", lexer.next());
+        assertEquals("ABc", lexer.next());
+        assertEquals(1, lexer.ruleId());
+        assertEquals("\t", lexer.next());
+        assertEquals("é", lexer.next());
+        assertFalse(lexer.hasNext());
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void test4_1() {
+        TokenRules.builder().rule("X", "(ab");
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void test4_2() {
+        TokenRules.builder().rule("X", "a{3,2}");
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void test4_3() {
+        TokenRules.builder().rule("X", "^a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test5_1() {
+        TokenRules.builder().rule("X", "a*");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test5_2() {
+        TokenRules.builder().rule("X", "a").rule("X", "b");
+    }
+}
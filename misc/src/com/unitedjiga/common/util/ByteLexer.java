@@ -0,0 +1,293 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import static com.unitedjiga.common.util.CharClassTable.WHITESPACE;
+import static com.unitedjiga.common.util.CharClassTable.WORD;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * US-ASCII、ISO-8859-1、UTF-8のバイト列を、文字に変換せずに直接走査するLexerです。
+ * {@code '\u005Cu0100'}より小さいコードポイントの種別は文字設定の最初のページから直接求め、
+ * UTF-8の複数バイトの文字は出現した場合にだけデコードします。
+ * ASCII文字またはISO-8859-1のバイトだけのトークンは、バイト列からLatin-1の文字列として直接生成します。
+ *
+ * <p>
+ * トークンと直前にスキップした空白は、同じバイト列を{@link Lexer#Lexer(ByteBuffer, Charset, LexerSpec)}で
+ * 字句解析した場合と同じです。
+ * 走査するのは文字設定とキーワードの表だけの仕様で、{@link PushLexer}と同様に、
+ * トークンの規則、演算子の表、引用符またはコメントを設定した仕様には使用できません。
+ * 不正なUTF-8のバイト列に出会った場合は、その直前のトークンの終わりから、置換文字に置き換えてデコードするLexerで字句解析を続けます。
+ *
+ * @author Junji Mikami
+ */
+final class ByteLexer implements Iterator<Lexeme> {
+
+    private static final int ASCII = 0;
+    private static final int LATIN1 = 1;
+    private static final int UTF8 = 2;
+
+    private final ByteBuffer bb;
+    private final int limit;
+    private final int encoding;
+    private final Charset cs;
+    private final LexerSpec spec;
+    private final CharClassTable table;
+    /** {@code '\u005Cu0100'}より小さいコードポイントの種別。 */
+    private final byte[] types;
+    /** ヒープのバイトバッファでない場合に、文字列を生成するバイト列を複製するためのビュー。 */
+    private ByteBuffer view;
+    private byte[] scratch;
+    private int pos;
+    private Lexeme next;
+    /** 不正なバイト列に出会った後に字句解析を続けるLexerのトークン。 */
+    private Iterator<Lexeme> fallback;
+
+    /** 直前にデコードした文字のバイト数。 */
+    private int cpLength;
+    /** 直前に走査した範囲にASCII文字以外が含まれていた場合にtrue。 */
+    private boolean nonAscii;
+    /** 直前に走査した範囲に不正なバイト列が含まれていた場合にtrue。 */
+    private boolean malformed;
+
+    /**
+     * 指定のバイトバッファの位置から上限までを字句解析するLexerを構築します。
+     * バイトバッファの位置は変更しません。
+     */
+    ByteLexer(ByteBuffer bb, Charset cs, LexerSpec spec) {
+        this.bb = bb;
+        this.pos = bb.position();
+        this.limit = bb.limit();
+        this.encoding = encoding(cs);
+        this.cs = cs;
+        this.spec = spec;
+        this.table = spec.table;
+        this.types = spec.table.pages[0];
+    }
+
+    /**
+     * 指定のバイトバッファの位置から上限までを字句解析し、トークンのストリームを返します。
+     * このクラスで字句解析できない文字セットと仕様の場合は、デコードするLexerで字句解析します。
+     */
+    static Stream<Lexeme> lex(ByteBuffer bb, Charset cs, LexerSpec spec) {
+        Iterator<Lexeme> it = supports(cs, spec) ? new ByteLexer(bb, cs, spec)
+                : ParallelLexer.lexemes(new Lexer(bb, cs, spec));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+
+    /**
+     * 指定の文字セットと仕様のバイト列を、このクラスで字句解析できる場合にtrueを返します。
+     */
+    static boolean supports(Charset cs, LexerSpec spec) {
+        return encoding(cs) >= 0 && spec.rules == null && spec.operators == null && spec.delimiters == null;
+    }
+
+    private static int encoding(Charset cs) {
+        if (cs.equals(StandardCharsets.US_ASCII)) {
+            return ASCII;
+        }
+        if (cs.equals(StandardCharsets.ISO_8859_1)) {
+            return LATIN1;
+        }
+        if (cs.equals(StandardCharsets.UTF_8)) {
+            return UTF8;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = fallback == null ? scan() : fallback.hasNext() ? fallback.next() : null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Lexeme next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Lexeme lexeme = next;
+        next = null;
+        return lexeme;
+    }
+
+    private Lexeme scan() {
+        int wsStart = pos;
+        nonAscii = false;
+        malformed = false;
+        int start = span(wsStart, WHITESPACE);
+        boolean wsNonAscii = nonAscii;
+        if (!malformed && start == limit) {
+            pos = limit;
+            return null;
+        }
+        int c = malformed ? -1 : codePointAt(start);
+        int end = start + cpLength;
+        boolean word = false;
+        nonAscii = c >= 0x80;
+        if (c >= 0 && classOf(c) == WORD) {
+            word = true;
+            end = span(end, WORD);
+        }
+        if (malformed || c < 0) {
+            // 置換文字の種別によってトークンの切り出し方が変わるため、デコードするLexerに任せます。
+            ByteBuffer rest = bb.duplicate();
+            rest.position(wsStart);
+            fallback = ParallelLexer.lexemes(new Lexer(rest, cs, spec));
+            pos = limit;
+            return fallback.hasNext() ? fallback.next() : null;
+        }
+        pos = end;
+        String text = word ? string(start, end, nonAscii)
+                : c < 0x100 ? Lexer.charString(c) : new String(Character.toChars(c));
+        return new Lexeme(text, start == wsStart ? "" : string(wsStart, start, wsNonAscii), word);
+    }
+
+    /**
+     * 指定の位置から、指定の種別の文字が続く範囲の終わりを返します。
+     * ASCII文字以外が含まれていた場合は{@code nonAscii}を、不正なバイト列に出会った場合は{@code malformed}を設定します。
+     */
+    private int span(int i, byte type) {
+        byte[] types = this.types;
+        ByteBuffer bb = this.bb;
+        int limit = this.limit;
+        while (i < limit) {
+            int b = bb.get(i);
+            if (b >= 0) {
+                if (types[b] != type) {
+                    return i;
+                }
+                i++;
+                continue;
+            }
+            int c = codePointAt(i);
+            if (c < 0) {
+                malformed = true;
+                return i;
+            }
+            if (classOf(c) != type) {
+                return i;
+            }
+            nonAscii = true;
+            i += cpLength;
+        }
+        return i;
+    }
+
+    /**
+     * 指定の位置の文字のコードポイントを返し、そのバイト数を{@code cpLength}に設定します。
+     *
+     * @return コードポイント。不正なバイト列の場合は-1
+     */
+    private int codePointAt(int i) {
+        int b = bb.get(i);
+        cpLength = 1;
+        if (b >= 0) {
+            return b;
+        }
+        if (encoding == LATIN1) {
+            return b & 0xFF;
+        }
+        if (encoding == ASCII) {
+            return 0xFFFD;
+        }
+        // 次のバイトの範囲はjava.nio.charset.CharsetDecoderが正しいと判定する範囲と同じです。
+        int lead = b & 0xFF;
+        int n;
+        int c;
+        int min = 0x80;
+        int max = 0xBF;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            n = 2;
+            c = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            n = 3;
+            c = lead & 0x0F;
+            if (lead == 0xE0) {
+                min = 0xA0;
+            } else if (lead == 0xED) {
+                max = 0x9F;
+            }
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            n = 4;
+            c = lead & 0x07;
+            if (lead == 0xF0) {
+                min = 0x90;
+            } else if (lead == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return -1;
+        }
+        if (limit - i < n) {
+            return -1;
+        }
+        for (int k = 1; k < n; k++) {
+            int t = bb.get(i + k) & 0xFF;
+            if (t < min || t > max) {
+                return -1;
+            }
+            min = 0x80;
+            max = 0xBF;
+            c = c << 6 | t & 0x3F;
+        }
+        cpLength = n;
+        return c;
+    }
+
+    private int classOf(int c) {
+        return c < 0x100 ? types[c] : table.classOf(c);
+    }
+
+    /**
+     * 指定の範囲のバイト列の文字列を返します。
+     * ASCII文字だけの範囲とISO-8859-1の範囲は、Latin-1の文字列として生成します。
+     */
+    private String string(int from, int to, boolean nonAscii) {
+        Charset cs = !nonAscii || encoding == LATIN1 ? StandardCharsets.ISO_8859_1 : this.cs;
+        int n = to - from;
+        if (bb.hasArray()) {
+            return new String(bb.array(), bb.arrayOffset() + from, n, cs);
+        }
+        if (scratch == null || scratch.length < n) {
+            view = bb.duplicate();
+            scratch = new byte[Math.max(n, 64)];
+        }
+        view.position(from);
+        view.get(scratch, 0, n);
+        return new String(scratch, 0, n, cs);
+    }
+}
@@ -0,0 +1,775 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import static com.unitedjiga.common.util.CharClassTable.LINE_TERMINATOR;
+import static com.unitedjiga.common.util.CharClassTable.WHITESPACE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
+
+/**
+ * バイト列を呼び出し側の文字配列へ直接デコードするReaderです。
+ * US-ASCII、ISO-8859-1、UTF-8、Shift_JISは専用のループでデコードし、
+ * ASCII文字の並びは8バイトずつ判定して書き込みます。
+ * UTF-8の複数バイトの文字は出現した場合にだけデコードします。
+ * それ以外の文字セットと、置換文字列が置換文字でないデコーダーはjava.nio.charset.CharsetDecoderでデコードします。
+ * 不正な入力とマップできない文字は、デコーダーのアクションに従って置換、無視、または報告します。
+ * ファイルチャネルから読み込む場合は、ファイルを窓単位でマップします。
+ *
+ * @author Junji Mikami
+ */
+final class ByteReader extends Reader {
+
+    static final long WINDOW_SIZE = 1L << 30;
+    private static final int BUFFER_SIZE = 8192;
+    private static final char REPLACEMENT = '\uFFFD';
+    /** 8バイトのいずれかがASCII文字でない場合に0以外になるマスク。 */
+    private static final long NON_ASCII = 0x8080808080808080L;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private static final int ASCII = 0;
+    private static final int LATIN1 = 1;
+    private static final int UTF8 = 2;
+    private static final int SJIS = 3;
+    private static final int GENERIC = 4;
+
+    private final InputStream in;
+    private final FileChannel channel;
+    private final long size;
+    private final long window;
+    private final Charset cs;
+    private final int coding;
+    private final CharsetDecoder decoder;
+    private final CodingErrorAction malformedAction;
+    private final CodingErrorAction unmappableAction;
+    private ByteBuffer bb;
+    /** バイトバッファの先頭の、入力の先頭からのバイトオフセット。 */
+    private long base;
+    private char pending;
+    private boolean eof;
+    private boolean ended;
+    private boolean flushed;
+    private boolean closed;
+
+    /**
+     * 指定のバイトバッファの位置から上限までを読み込むReaderを構築します。
+     * バイトバッファの位置は変更されません。
+     * 不正な入力は置換文字に置き換えます。
+     */
+    ByteReader(ByteBuffer bb, Charset cs) {
+        this(bb, cs, 0);
+    }
+
+    /**
+     * 指定のバイトバッファの位置から上限までを読み込むReaderを構築します。
+     * バイトバッファの位置は変更されません。
+     * 不正な入力は置換文字に置き換えます。
+     *
+     * @param origin バイトバッファの位置の、入力の先頭からのバイトオフセット
+     */
+    ByteReader(ByteBuffer bb, Charset cs, long origin) {
+        this(bb, replacing(cs), origin);
+    }
+
+    /**
+     * 指定のバイトバッファの位置から上限までを、指定のデコーダーのアクションに従って読み込むReaderを構築します。
+     * バイトバッファの位置は変更されません。
+     *
+     * @param origin バイトバッファの位置の、入力の先頭からのバイトオフセット
+     */
+    ByteReader(ByteBuffer bb, CharsetDecoder decoder, long origin) {
+        this(null, null, 0, 0, bb.duplicate(), decoder, origin - bb.position());
+        eof = true;
+    }
+
+    /**
+     * 指定のバイトストリームを読み込むReaderを構築します。
+     * 不正な入力は置換文字に置き換えます。
+     */
+    ByteReader(InputStream in, Charset cs) {
+        this(in, cs, 0);
+    }
+
+    /**
+     * 指定のバイトストリームを読み込むReaderを構築します。
+     * 不正な入力は置換文字に置き換えます。
+     *
+     * @param origin バイトストリームの先頭の、入力の先頭からのバイトオフセット
+     */
+    ByteReader(InputStream in, Charset cs, long origin) {
+        this(in, replacing(cs), origin);
+    }
+
+    /**
+     * 指定のバイトストリームを、指定のデコーダーのアクションに従って読み込むReaderを構築します。
+     *
+     * @param origin バイトストリームの先頭の、入力の先頭からのバイトオフセット
+     */
+    ByteReader(InputStream in, CharsetDecoder decoder, long origin) {
+        this(in, null, 0, 0, ByteBuffer.allocate(BUFFER_SIZE).flip(), decoder, origin);
+    }
+
+    /**
+     * 指定のファイルチャネルの指定のバイトオフセットから、指定のデコーダーのアクションに従って読み込むReaderを構築します。
+     * ファイルは{@link #WINDOW_SIZE}ずつマップします。
+     */
+    ByteReader(FileChannel channel, CharsetDecoder decoder, long start) throws IOException {
+        this(channel, decoder, start, WINDOW_SIZE);
+    }
+
+    /**
+     * 指定のファイルチャネルの指定のバイトオフセットから、指定のデコーダーのアクションに従って読み込むReaderを構築します。
+     *
+     * @param window マップする窓のバイト数
+     */
+    ByteReader(FileChannel channel, CharsetDecoder decoder, long start, long window) throws IOException {
+        this(null, channel, channel.size(), window, null, decoder, start);
+        map(start);
+    }
+
+    private ByteReader(InputStream in, FileChannel channel, long size, long window, ByteBuffer bb,
+            CharsetDecoder decoder, long base) {
+        this.in = in;
+        this.channel = channel;
+        this.size = size;
+        this.window = window;
+        this.bb = bb;
+        this.cs = decoder.charset();
+        this.base = base;
+        this.decoder = decoder;
+        malformedAction = decoder.malformedInputAction();
+        unmappableAction = decoder.unmappableCharacterAction();
+        if (!decoder.replacement().equals(String.valueOf(REPLACEMENT))) {
+            coding = GENERIC;
+        } else if (cs.equals(StandardCharsets.UTF_8)) {
+            coding = UTF8;
+        } else if (cs.equals(StandardCharsets.ISO_8859_1)) {
+            coding = LATIN1;
+        } else if (cs.equals(StandardCharsets.US_ASCII)) {
+            coding = ASCII;
+        } else if (cs.name().equals("Shift_JIS")) {
+            coding = SJIS;
+        } else {
+            coding = GENERIC;
+        }
+    }
+
+    /**
+     * 不正な入力とマップできない文字を置換文字に置き換える、指定の文字セットのデコーダーを返します。
+     */
+    static CharsetDecoder replacing(Charset cs) {
+        return cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (ended) {
+            return decodeEnd(cbuf, off, len);
+        }
+        int n = 0;
+        if (pending != 0) {
+            cbuf[off] = pending;
+            pending = 0;
+            n++;
+        }
+        while (n < len) {
+            try {
+                n += decode(cbuf, off + n, len - n);
+            } catch (CharacterCodingException ex) {
+                // 報告は返していない下位サロゲートを返した後で行います。
+                if (n > 0) {
+                    break;
+                }
+                throw ex;
+            }
+            if (n > 0 || !fill()) {
+                break;
+            }
+        }
+        if (n == 0) {
+            n = decodeEnd(cbuf, off, len);
+        }
+        return n;
+    }
+
+    /**
+     * 未読のバイト数の見積もりを返します。
+     *
+     * @return 未読のバイト数。バイトストリームから読み込む場合はLong.MAX_VALUE
+     */
+    long estimateSize() {
+        if (in != null) {
+            return Long.MAX_VALUE;
+        }
+        return channel != null ? size - position() : bb.remaining();
+    }
+
+    /**
+     * デコードした文字に対応するバイトの終わりの、入力の先頭からのバイトオフセットを返します。
+     * 読み込みで返していない下位サロゲートがある場合、そのバイトも含みます。
+     *
+     * @return デコード済みのバイトオフセット
+     */
+    long position() {
+        return base + bb.position();
+    }
+
+    Charset charset() {
+        return cs;
+    }
+
+    /**
+     * 指定の文字をこのReaderの文字セットでエンコードした場合のバイト数を返します。
+     * 読み込みで返していない下位サロゲートは、範囲の後に続くものとして数えます。
+     * 専用のループでデコードする文字セットの場合にだけ求めます。
+     * 置換または無視したバイト列はデコード前のバイト数がわからないため、
+     * 置換した置換文字が含まれる場合と、無視するアクションの場合は求めません。
+     *
+     * @param a    文字配列
+     * @param from 開始位置
+     * @param to   終了位置
+     * @return バイト数。求められない場合は-1
+     */
+    long encodedLength(char[] a, int from, int to) {
+        if (coding == GENERIC || malformedAction == CodingErrorAction.IGNORE
+                || unmappableAction == CodingErrorAction.IGNORE) {
+            return -1;
+        }
+        boolean replacing = malformedAction == CodingErrorAction.REPLACE
+                || unmappableAction == CodingErrorAction.REPLACE;
+        char low = pending;
+        long n = 0;
+        for (int i = from; i < to; i++) {
+            char c = a[i];
+            if (c == REPLACEMENT && replacing) {
+                return -1;
+            }
+            if (c < 0x80 || coding == ASCII || coding == LATIN1) {
+                n++;
+            } else if (coding == SJIS) {
+                n += c >= '\uFF61' && c <= '\uFF9F' ? 1 : 2;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (!Character.isSurrogate(c)) {
+                n += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(a[i + 1])) {
+                n += 4;
+                i++;
+            } else if (Character.isHighSurrogate(c) && i + 1 == to && low != 0) {
+                n += 4;
+                low = 0;
+            } else {
+                return -1;
+            }
+        }
+        return low == 0 ? n : -1;
+    }
+
+    /**
+     * 未読のバイトを、中央以降で最初の空白文字または行終端文字のバイトの位置で分割します。
+     * このReaderは前半だけを読み込むようになり、後半は新しいReaderで読み込みます。
+     * バイトバッファから読み込み、かつバイト単位で文字の境界を判定できる文字セットの場合にだけ分割できます。
+     *
+     * @param table 空白文字と行終端文字を判定する表
+     * @return 後半を読み込むReader。分割できない場合はnull
+     */
+    ByteReader trySplit(CharClassTable table) {
+        // Shift_JISの2バイトの文字の2バイト目にはASCII文字のバイトが含まれます。
+        if (in != null || channel != null || coding == SJIS || coding == GENERIC || ended) {
+            return null;
+        }
+        // UTF-8の複数バイトの文字にASCII文字のバイトが含まれることはありません。
+        int byteLimit = coding == LATIN1 ? 0x100 : 0x80;
+        byte[] types = table.pages[0];
+        int p = bb.position();
+        int limit = bb.limit();
+        for (int i = p + Math.max(1, (limit - p) / 2); i < limit; i++) {
+            int b = bb.get(i) & 0xff;
+            if (b < byteLimit && (types[b] == WHITESPACE || types[b] == LINE_TERMINATOR)) {
+                ByteReader r = new ByteReader(bb.duplicate().position(i), decoder, base + i);
+                bb.limit(i);
+                return r;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ファイルの指定のバイトオフセットから窓をマップします。
+     */
+    private void map(long start) throws IOException {
+        long length = Math.min(window, size - start);
+        bb = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        base = start;
+        eof = start + length == size;
+    }
+
+    /**
+     * 残りのバイトを詰めてバイトストリームから読み込むか、次の窓をマップします。
+     *
+     * @return バイトを読み込んだ場合にtrue
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (channel != null) {
+            // 窓の終わりで途切れた文字は次の窓の先頭からデコードし直します。
+            map(position());
+            return true;
+        }
+        base += bb.position();
+        bb.compact();
+        if (!bb.hasRemaining()) {
+            bb = ByteBuffer.allocate(bb.capacity() * 2).put(bb.flip());
+        }
+        int n;
+        do {
+            n = in.read(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+        } else {
+            bb.position(bb.position() + n);
+        }
+        bb.flip();
+        return n > 0;
+    }
+
+    /**
+     * 入力の終わりで途切れた文字を処理します。
+     *
+     * @return 読み込んだ文字数。入力の終わりに達した場合は-1
+     */
+    private int decodeEnd(char[] cbuf, int off, int len) throws IOException {
+        ended = true;
+        if (coding == GENERIC) {
+            if (flushed) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            CoderResult cr = decoder.decode(bb, out, true);
+            if (cr.isUnderflow()) {
+                flushed = decoder.flush(out).isUnderflow();
+            }
+            int n = out.position() - off;
+            if (cr.isError() && n == 0) {
+                cr.throwException();
+            }
+            return n == 0 && flushed ? -1 : n;
+        }
+        if (!bb.hasRemaining()) {
+            return -1;
+        }
+        int n = onError(cbuf, off, off, bb.position(), true, bb.remaining());
+        bb.position(bb.limit());
+        return n == 0 ? -1 : n;
+    }
+
+    private int decode(char[] cbuf, int off, int len) throws CharacterCodingException {
+        switch (coding) {
+        case ASCII:
+            return decodeAscii(cbuf, off, len);
+        case LATIN1:
+            return decodeLatin1(cbuf, off, len);
+        case UTF8:
+            return decodeUtf8(cbuf, off, len);
+        case SJIS:
+            return decodeSjis(cbuf, off, len);
+        default:
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            CoderResult cr = decoder.decode(bb, out, false);
+            int n = out.position() - off;
+            if (cr.isError() && n == 0) {
+                cr.throwException();
+            }
+            return n;
+        }
+    }
+
+    /**
+     * デコードできないバイト列をアクションに従って処理します。
+     * 置換する場合は置換文字を書き込み、無視する場合は何もしません。
+     * 報告する場合は、それまでにデコードした文字がなければバイトバッファの位置をバイト列の先頭にして例外をスローします。
+     *
+     * @param o         書き込む位置
+     * @param off       デコードを開始した位置
+     * @param p         バイト列の位置
+     * @param malformed 不正な入力の場合はtrue、マップできない文字の場合はfalse
+     * @param length    バイト列の長さ
+     * @return 書き込んだ文字数。報告するためにデコードを中断する場合は-1
+     * @throws CharacterCodingException 報告する場合
+     */
+    private int onError(char[] cbuf, int o, int off, int p, boolean malformed, int length)
+            throws CharacterCodingException {
+        CodingErrorAction action = malformed ? malformedAction : unmappableAction;
+        if (action == CodingErrorAction.REPLACE) {
+            cbuf[o] = REPLACEMENT;
+            return 1;
+        }
+        if (action == CodingErrorAction.IGNORE) {
+            return 0;
+        }
+        if (o > off) {
+            return -1;
+        }
+        bb.position(p);
+        throw malformed ? new MalformedInputException(length) : new UnmappableCharacterException(length);
+    }
+
+    /**
+     * バイトバッファの指定の位置から8バイトずつ読み込み、各バイトを文字として文字配列へ書き込みます。
+     * 8バイトのいずれかがマスクのビットを含む場合は、その8バイトの前で止めます。
+     *
+     * @param p    バイトバッファの位置
+     * @param o    文字配列の位置
+     * @param n    書き込める文字数の上限
+     * @param mask 止めるバイトのビット。止めない場合は0
+     * @return 書き込んだ文字数。8の倍数
+     */
+    private static int copyBytes(ByteBuffer bb, int p, char[] cbuf, int o, int n, long mask) {
+        int i = 0;
+        for (; i <= n - 8; i += 8) {
+            long w = (long) LONGS.get(bb, p + i);
+            if ((w & mask) != 0) {
+                break;
+            }
+            int j = o + i;
+            cbuf[j] = (char) (w & 0xff);
+            cbuf[j + 1] = (char) ((w >>> 8) & 0xff);
+            cbuf[j + 2] = (char) ((w >>> 16) & 0xff);
+            cbuf[j + 3] = (char) ((w >>> 24) & 0xff);
+            cbuf[j + 4] = (char) ((w >>> 32) & 0xff);
+            cbuf[j + 5] = (char) ((w >>> 40) & 0xff);
+            cbuf[j + 6] = (char) ((w >>> 48) & 0xff);
+            cbuf[j + 7] = (char) (w >>> 56);
+        }
+        return i;
+    }
+
+    private int decodeAscii(char[] cbuf, int off, int len) throws CharacterCodingException {
+        int p = bb.position();
+        int limit = bb.limit();
+        int o = off;
+        int end = off + len;
+        while (o < end && p < limit) {
+            int k = copyBytes(bb, p, cbuf, o, Math.min(end - o, limit - p), NON_ASCII);
+            o += k;
+            p += k;
+            if (o == end || p == limit) {
+                break;
+            }
+            byte b = bb.get(p);
+            if (b >= 0) {
+                cbuf[o++] = (char) b;
+            } else {
+                k = onError(cbuf, o, off, p, true, 1);
+                if (k < 0) {
+                    break;
+                }
+                o += k;
+            }
+            p++;
+        }
+        bb.position(p);
+        return o - off;
+    }
+
+    private int decodeLatin1(char[] cbuf, int off, int len) {
+        int p = bb.position();
+        int n = Math.min(len, bb.limit() - p);
+        for (int i = copyBytes(bb, p, cbuf, off, n, 0); i < n; i++) {
+            cbuf[off + i] = (char) (bb.get(p + i) & 0xff);
+        }
+        bb.position(p + n);
+        return n;
+    }
+
+    /*
+     * 不正な入力の長さはjava.nio.charset.StandardCharsets#UTF_8のデコーダーと同じ規則で決めます。
+     */
+    private int decodeUtf8(char[] cbuf, int off, int len) throws CharacterCodingException {
+        int p = bb.position();
+        int limit = bb.limit();
+        int o = off;
+        int end = off + len;
+        while (o < end && p < limit) {
+            int b1 = bb.get(p);
+            if (b1 >= 0) {
+                int k = copyBytes(bb, p, cbuf, o, Math.min(end - o, limit - p), NON_ASCII);
+                if (k > 0) {
+                    o += k;
+                    p += k;
+                } else {
+                    cbuf[o++] = (char) b1;
+                    p++;
+                }
+                continue;
+            }
+            int remaining = limit - p;
+            int malformed;
+            if ((b1 >> 5) == -2 && (b1 & 0x1e) != 0) {
+                if (remaining < 2) {
+                    break;
+                }
+                int b2 = bb.get(p + 1);
+                if (isNotContinuation(b2)) {
+                    malformed = 1;
+                } else {
+                    cbuf[o++] = (char) (((b1 & 0x1f) << 6) | (b2 & 0x3f));
+                    p += 2;
+                    continue;
+                }
+            } else if ((b1 >> 4) == -2) {
+                if (remaining < 3) {
+                    if (remaining > 1 && isMalformed3(b1, bb.get(p + 1))) {
+                        malformed = 1;
+                    } else {
+                        break;
+                    }
+                } else {
+                    int b2 = bb.get(p + 1);
+                    int b3 = bb.get(p + 2);
+                    if (isMalformed3(b1, b2) || isNotContinuation(b3)) {
+                        malformed = isMalformed3(b1, b2) ? 1 : 2;
+                    } else {
+                        char c = (char) (((b1 & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+                        if (Character.isSurrogate(c)) {
+                            malformed = 3;
+                        } else {
+                            cbuf[o++] = c;
+                            p += 3;
+                            continue;
+                        }
+                    }
+                }
+            } else if ((b1 >> 3) == -2) {
+                if (remaining < 4) {
+                    if (remaining > 1 && isMalformed4(b1, bb.get(p + 1)) || (b1 & 0xff) > 0xf4) {
+                        malformed = 1;
+                    } else if (remaining > 2 && isNotContinuation(bb.get(p + 2))) {
+                        malformed = 2;
+                    } else {
+                        break;
+                    }
+                } else {
+                    int b2 = bb.get(p + 1);
+                    int b3 = bb.get(p + 2);
+                    int b4 = bb.get(p + 3);
+                    int cp = ((b1 & 0x07) << 18) | ((b2 & 0x3f) << 12) | ((b3 & 0x3f) << 6) | (b4 & 0x3f);
+                    if (isNotContinuation(b2) || isNotContinuation(b3) || isNotContinuation(b4)
+                            || !Character.isSupplementaryCodePoint(cp)) {
+                        if ((b1 & 0xff) > 0xf4 || isMalformed4(b1, b2)) {
+                            malformed = 1;
+                        } else {
+                            malformed = isNotContinuation(b3) ? 2 : 3;
+                        }
+                    } else {
+                        cbuf[o++] = Character.highSurrogate(cp);
+                        if (o < end) {
+                            cbuf[o++] = Character.lowSurrogate(cp);
+                        } else {
+                            pending = Character.lowSurrogate(cp);
+                        }
+                        p += 4;
+                        continue;
+                    }
+                }
+            } else {
+                malformed = 1;
+            }
+            int k = onError(cbuf, o, off, p, true, malformed);
+            if (k < 0) {
+                break;
+            }
+            o += k;
+            p += malformed;
+        }
+        bb.position(p);
+        return o - off;
+    }
+
+    private static boolean isNotContinuation(int b) {
+        return (b & 0xc0) != 0x80;
+    }
+
+    /**
+     * 3バイトの文字の2バイト目までが不正かを判定します。
+     */
+    private static boolean isMalformed3(int b1, int b2) {
+        return (b1 == (byte) 0xe0 && (b2 & 0xe0) == 0x80) || isNotContinuation(b2);
+    }
+
+    /**
+     * 4バイトの文字の2バイト目までが不正かを判定します。
+     */
+    private static boolean isMalformed4(int b1, int b2) {
+        int u1 = b1 & 0xff;
+        int u2 = b2 & 0xff;
+        return (u1 == 0xf0 && (u2 < 0x90 || u2 > 0xbf))
+                || (u1 == 0xf4 && (u2 & 0xf0) != 0x80)
+                || isNotContinuation(u2);
+    }
+
+    /*
+     * 0x00から0x7FまではASCII文字と同じです。
+     */
+    private int decodeSjis(char[] cbuf, int off, int len) throws CharacterCodingException {
+        int p = bb.position();
+        int limit = bb.limit();
+        int o = off;
+        int end = off + len;
+        while (o < end && p < limit) {
+            int b1 = bb.get(p) & 0xff;
+            if (b1 < 0x80) {
+                int k = copyBytes(bb, p, cbuf, o, Math.min(end - o, limit - p), NON_ASCII);
+                if (k > 0) {
+                    o += k;
+                    p += k;
+                } else {
+                    cbuf[o++] = (char) b1;
+                    p++;
+                }
+                continue;
+            }
+            char c = ShiftJis.SINGLE[b1];
+            if (c != 0) {
+                cbuf[o++] = c;
+                p++;
+                continue;
+            }
+            if (limit - p < 2) {
+                break;
+            }
+            int i = ShiftJis.ROWS[b1] << 8 | (bb.get(p + 1) & 0xff);
+            c = ShiftJis.PAIRS[i];
+            if (c != 0) {
+                cbuf[o++] = c;
+                p += 2;
+                continue;
+            }
+            int error = ShiftJis.ERRORS[i];
+            int length = Math.abs(error);
+            int k = onError(cbuf, o, off, p, error < 0, length);
+            if (k < 0) {
+                break;
+            }
+            o += k;
+            p += length;
+        }
+        bb.position(p);
+        return o - off;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (in != null) {
+            in.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Shift_JISのデコード表です。
+     * 最初に使用する際に、JDKのShift_JISのデコーダーで0x80以上の1バイトと、先行バイトと後続バイトの組をすべてデコードして作ります。
+     */
+    private static final class ShiftJis {
+
+        /** 0x80以上の1バイトの文字。先行バイトの場合は0。 */
+        static final char[] SINGLE = new char[0x100];
+        /** 先行バイトの、組の表の行。 */
+        static final int[] ROWS = new int[0x100];
+        /** 先行バイトと後続バイトの組の文字。デコードできない場合は0。 */
+        static final char[] PAIRS;
+        /** デコードできない組の、不正な入力の場合は負の、マップできない文字の場合は正のバイト数。 */
+        static final byte[] ERRORS;
+
+        static {
+            CharsetDecoder d = Charset.forName("Shift_JIS").newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            CharBuffer out = CharBuffer.allocate(2);
+            int rows = 0;
+            for (int b = 0x80; b < 0x100; b++) {
+                out.clear();
+                CoderResult cr = d.reset().decode(ByteBuffer.wrap(new byte[] { (byte) b }), out, false);
+                if (cr.isUnderflow() && out.position() == 1) {
+                    SINGLE[b] = out.get(0);
+                } else {
+                    // 1バイトで不正な場合も組の表で扱います。
+                    ROWS[b] = rows++;
+                }
+            }
+            PAIRS = new char[rows << 8];
+            ERRORS = new byte[rows << 8];
+            for (int b1 = 0x80; b1 < 0x100; b1++) {
+                if (SINGLE[b1] != 0) {
+                    continue;
+                }
+                for (int b2 = 0; b2 < 0x100; b2++) {
+                    ByteBuffer pair = ByteBuffer.wrap(new byte[] { (byte) b1, (byte) b2 });
+                    out.clear();
+                    CoderResult cr = d.reset().decode(pair, out, false);
+                    int i = ROWS[b1] << 8 | b2;
+                    if (cr.isError()) {
+                        ERRORS[i] = (byte) (cr.isMalformed() ? -cr.length() : cr.length());
+                    } else if (pair.position() == 2 && out.position() == 1 && out.get(0) != 0) {
+                        PAIRS[i] = out.get(0);
+                    } else {
+                        // JDKのデコーダーでは生じません。
+                        ERRORS[i] = -1;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Lexerが使用する文字種別の表です。
+ * コードポイントの上位ビットで引くページの表と、下位8ビットで引く種別の表の2段で構成されます。
+ * すべての文字が同じ種別のページは共有され、変更時にだけ複製されます。
+ *
+ * <p>
+ * 上位サロゲートの種別は常に{@link #HIGH_SURROGATE}です。
+ * Lexerは後続の下位サロゲートと組み合わせたコードポイントの種別を改めて引きます。
+ * 下位サロゲートの種別は常に{@link #ORDINARY}で、対になっていない下位サロゲートは通常文字になります。
+ *
+ * @author Junji Mikami
+ */
+final class CharClassTable {
+
+    static final byte ORDINARY = 0;
+    static final byte WORD = 1;
+    static final byte WHITESPACE = 2;
+    static final byte LINE_TERMINATOR = 3;
+    static final byte HIGH_SURROGATE = 4;
+
+    private static final int SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << SHIFT;
+    private static final int MASK = PAGE_SIZE - 1;
+    private static final int PAGES = (Character.MAX_CODE_POINT + 1) >>> SHIFT;
+
+    private static final byte[][] UNIFORM = new byte[HIGH_SURROGATE + 1][PAGE_SIZE];
+    static {
+        for (byte type = 0; type < UNIFORM.length; type++) {
+            Arrays.fill(UNIFORM[type], type);
+        }
+    }
+    private static final int[] UNIFORM_HASH = new int[UNIFORM.length];
+    static {
+        for (int type = 0; type < UNIFORM.length; type++) {
+            UNIFORM_HASH[type] = Arrays.hashCode(UNIFORM[type]);
+        }
+    }
+
+    /**
+     * 初期状態の表です。
+     * {@code '\u005Cu0000'}から{@code '\u005Cu00ff'}は通常文字、それ以外はワード構成文字です。
+     */
+    static final CharClassTable DEFAULT = new CharClassTable();
+
+    private static final Map<Object, int[]> RANGES = new ConcurrentHashMap<>();
+    private static final int MAX_RUN_RANGES = 4;
+    private static final char[] NO_RANGES = {};
+
+    final byte[][] pages;
+    private final boolean[] owned;
+
+    /*
+     * RunKernelに渡す、種別ごとの{@code '\u005Cu0100'}より小さい文字の範囲です。
+     * 表を変更すると破棄され、次に走査するときに求め直します。
+     */
+    private volatile char[][] runRanges;
+
+    private CharClassTable() {
+        pages = new byte[PAGES][];
+        owned = new boolean[PAGES];
+        Arrays.fill(pages, UNIFORM[WORD]);
+        pages[0] = UNIFORM[ORDINARY];
+        for (int p = Character.MIN_HIGH_SURROGATE >>> SHIFT; p <= Character.MAX_HIGH_SURROGATE >>> SHIFT; p++) {
+            pages[p] = UNIFORM[HIGH_SURROGATE];
+        }
+        for (int p = Character.MIN_LOW_SURROGATE >>> SHIFT; p <= Character.MAX_LOW_SURROGATE >>> SHIFT; p++) {
+            pages[p] = UNIFORM[ORDINARY];
+        }
+    }
+
+    private CharClassTable(CharClassTable table) {
+        pages = table.pages.clone();
+        owned = new boolean[PAGES];
+    }
+
+    /**
+     * 複製を返します。ページは変更されるまで共有されます。
+     *
+     * @return この表の複製
+     */
+    CharClassTable copy() {
+        return new CharClassTable(this);
+    }
+
+    /**
+     * 全ての文字の種別から求めた、プロセスに依存しないハッシュ値を返します。
+     * 同じ種別の表は、ページの共有の有無に関わらず同じ値になります。
+     */
+    int fingerprint() {
+        int h = 1;
+        for (byte[] page : pages) {
+            h = 31 * h + (page == UNIFORM[page[0]] ? UNIFORM_HASH[page[0]] : Arrays.hashCode(page));
+        }
+        return h;
+    }
+
+    int classOf(int cp) {
+        return pages[cp >>> SHIFT][cp & MASK];
+    }
+
+    /**
+     * 文字配列の指定の位置から、指定の種別の文字が続く範囲の終わりを返します。
+     * 上位サロゲートは後続の下位サロゲートと組み合わせたコードポイントで判定し、
+     * 対になっていない上位サロゲートは指定の種別に含めません。
+     * 範囲の最後の文字が上位サロゲートの場合、組み合わせる文字がないためその位置を返します。
+     *
+     * @param a    文字配列
+     * @param from 開始位置
+     * @param to   終了位置
+     * @param type 種別
+     * @return 指定の種別ではない最初の文字の位置。すべて指定の種別の場合はto
+     */
+    int span(char[] a, int from, int to, byte type) {
+        byte[][] pages = this.pages;
+        RunKernel kernel = RunKernel.INSTANCE;
+        char[][] r = runRanges;
+        char[] ranges = r != null ? r[type] : runRanges()[type];
+        int i = from;
+        while (i < to) {
+            int c = a[i];
+            if (c < 0x80 && ranges.length > 0 && to - i >= kernel.width()) {
+                i = kernel.skip(a, i, to, ranges);
+                if (i == to) {
+                    break;
+                }
+                c = a[i];
+            }
+            int t = pages[c >>> SHIFT][c & MASK];
+            if (t == type) {
+                i++;
+                continue;
+            }
+            if (t != HIGH_SURROGATE || i + 1 == to || !Character.isLowSurrogate(a[i + 1])) {
+                return i;
+            }
+            c = Character.toCodePoint((char) c, a[i + 1]);
+            if (pages[c >>> SHIFT][c & MASK] != type) {
+                return i;
+            }
+            i += 2;
+        }
+        return to;
+    }
+
+    /**
+     * 指定の範囲の文字の種別を設定します。サロゲートは変更されません。
+     *
+     * @param low  範囲の最初のコードポイント
+     * @param high 範囲の最後のコードポイント
+     * @param type 種別
+     */
+    void set(int low, int high, byte type) {
+        runRanges = null;
+        if (low > high) {
+            return;
+        }
+        if (low <= Character.MAX_SURROGATE && high >= Character.MIN_SURROGATE) {
+            set(low, Character.MIN_SURROGATE - 1, type);
+            set(Character.MAX_SURROGATE + 1, high, type);
+            return;
+        }
+        for (int p = low >>> SHIFT; p <= high >>> SHIFT; p++) {
+            int from = Math.max(low, p << SHIFT) & MASK;
+            int to = Math.min(high, (p << SHIFT) | MASK) & MASK;
+            if (from == 0 && to == MASK) {
+                pages[p] = UNIFORM[type];
+                owned[p] = false;
+            } else {
+                Arrays.fill(page(p), from, to + 1, type);
+            }
+        }
+    }
+
+    void set(int cp, byte type) {
+        runRanges = null;
+        if (cp < Character.MIN_SURROGATE || Character.MAX_SURROGATE < cp) {
+            page(cp >>> SHIFT)[cp & MASK] = type;
+        }
+    }
+
+    /**
+     * 指定のUnicodeブロックの文字の種別を設定します。
+     *
+     * @param block Unicodeブロック
+     * @param type  種別
+     */
+    void set(Character.UnicodeBlock block, byte type) {
+        Objects.requireNonNull(block);
+        set(block, cp -> Character.UnicodeBlock.of(cp) == block, type);
+    }
+
+    /**
+     * 指定のUnicodeスクリプトの文字の種別を設定します。
+     *
+     * @param script Unicodeスクリプト
+     * @param type   種別
+     */
+    void set(Character.UnicodeScript script, byte type) {
+        Objects.requireNonNull(script);
+        set(script, cp -> Character.UnicodeScript.of(cp) == script, type);
+    }
+
+    /**
+     * 条件を満たすすべての文字の種別を設定します。
+     * 条件ごとの範囲は初回に求めて保持されるため、keyは条件を一意に識別する値です。
+     */
+    private void set(Object key, IntPredicate predicate, byte type) {
+        int[] ranges = RANGES.computeIfAbsent(key, k -> ranges(predicate));
+        for (int i = 0; i < ranges.length; i += 2) {
+            set(ranges[i], ranges[i + 1], type);
+        }
+    }
+
+    /**
+     * 種別ごとに、ページ0の同じ種別の文字の範囲を求めます。
+     * 範囲が多すぎる種別はRunKernelで走査しないため、空の配列にします。
+     */
+    private char[][] runRanges() {
+        char[][] r = new char[HIGH_SURROGATE][];
+        byte[] page = pages[0];
+        for (byte type = 0; type < HIGH_SURROGATE; type++) {
+            char[] ranges = new char[MAX_RUN_RANGES * 2];
+            int n = 0;
+            int c = 0;
+            while (c < PAGE_SIZE && n >= 0) {
+                if (page[c] != type) {
+                    c++;
+                    continue;
+                }
+                int low = c;
+                while (c < PAGE_SIZE && page[c] == type) {
+                    c++;
+                }
+                if (n == ranges.length) {
+                    n = -1;
+                } else {
+                    ranges[n++] = (char) low;
+                    ranges[n++] = (char) (c - 1);
+                }
+            }
+            r[type] = n > 0 ? Arrays.copyOf(ranges, n) : NO_RANGES;
+        }
+        runRanges = r;
+        return r;
+    }
+
+    static void checkRange(int low, int hi) {
+        if (!Character.isValidCodePoint(low) || !Character.isValidCodePoint(hi) || low > hi) {
+            throw new IllegalArgumentException(String.format("U+%04X-U+%04X", low, hi));
+        }
+    }
+
+    private byte[] page(int p) {
+        if (!owned[p]) {
+            pages[p] = pages[p].clone();
+            owned[p] = true;
+        }
+        return pages[p];
+    }
+
+    private static int[] ranges(IntPredicate predicate) {
+        int[] ranges = new int[16];
+        int n = 0;
+        int cp = 0;
+        while (cp <= Character.MAX_CODE_POINT) {
+            if (!predicate.test(cp)) {
+                cp++;
+                continue;
+            }
+            int low = cp;
+            while (cp <= Character.MAX_CODE_POINT && predicate.test(cp)) {
+                cp++;
+            }
+            if (n == ranges.length) {
+                ranges = Arrays.copyOf(ranges, n * 2);
+            }
+            ranges[n++] = low;
+            ranges[n++] = cp - 1;
+        }
+        return Arrays.copyOf(ranges, n);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Lexerの字句解析を中断した位置と状態を保持する値です。
+ * 巨大なファイルの字句解析を中断し、別のプロセスで{@link Lexer#open(java.nio.file.Path, java.nio.charset.Charset, LexerSpec, Checkpoint)}
+ * によって同じトークンの並びの続きから再開するために使用します。
+ * バイト配列に変換して保存できます。
+ *
+ * @author Junji Mikami
+ * @see Lexer#checkpoint()
+ */
+public final class Checkpoint {
+
+    private static final int VERSION = 2;
+    private static final String[] NO_MODES = {};
+
+    private final long charOffset;
+    private final long byteOffset;
+    private final String charset;
+    private final int line;
+    private final long lineStart;
+    private final long prevLineStart;
+    private final long crEnd;
+    private final String[] modes;
+    /** 最初のモードから現在のモードまでの、スタックの各段の設定のハッシュ値。 */
+    private final int[] fingerprints;
+
+    Checkpoint(long charOffset, long byteOffset, String charset, int line, long lineStart, long prevLineStart,
+            long crEnd, String[] modes, int[] fingerprints) {
+        this.charOffset = charOffset;
+        this.byteOffset = byteOffset;
+        this.charset = byteOffset < 0 ? null : charset;
+        this.line = line;
+        this.lineStart = lineStart;
+        this.prevLineStart = prevLineStart;
+        this.crEnd = crEnd;
+        this.modes = modes;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * 再開する位置の、入力の先頭からのオフセットを返します。
+     * オフセットはcharの単位で数えます。
+     *
+     * @return 再開する位置のオフセット
+     */
+    public long getCharOffset() {
+        return charOffset;
+    }
+
+    /**
+     * 再開する位置の、入力の先頭からのバイトオフセットを返します。
+     * バイトオフセットがわかる場合、再開する際にファイルの途中から読み込みます。
+     *
+     * @return 再開する位置のバイトオフセット。わからない場合は-1
+     * @see #getCharsetName()
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * バイトオフセットを求めた文字セットの名前を返します。
+     *
+     * @return 文字セットの名前。バイトオフセットがわからない場合はnull
+     */
+    public String getCharsetName() {
+        return charset;
+    }
+
+    /**
+     * 再開する位置の行番号を返します。
+     *
+     * @return 再開する位置の行番号
+     */
+    public int getLineNumber() {
+        return line;
+    }
+
+    /**
+     * 再開する位置の列番号を返します。
+     *
+     * @return 再開する位置の列番号
+     */
+    public long getColumnNumber() {
+        return charOffset - lineStart + 1;
+    }
+
+    /**
+     * 中断した時点で{@link Lexer#pushMode(String)}で切り替えていたモードの名前を、切り替えた順に返します。
+     *
+     * @return モードの名前の配列。最初のモードの場合は長さ0の配列
+     */
+    public String[] getModes() {
+        return modes.clone();
+    }
+
+    long lineStart() {
+        return lineStart;
+    }
+
+    long prevLineStart() {
+        return prevLineStart;
+    }
+
+    long crEnd() {
+        return crEnd;
+    }
+
+    String[] modes() {
+        return modes;
+    }
+
+    int[] fingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * 保存するためのバイト配列に変換します。
+     *
+     * @return バイト配列
+     * @see #fromByteArray(byte[])
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(charOffset);
+            out.writeLong(byteOffset);
+            out.writeUTF(charset == null ? "" : charset);
+            out.writeInt(line);
+            out.writeLong(lineStart);
+            out.writeLong(prevLineStart);
+            out.writeLong(crEnd);
+            out.writeShort(modes.length);
+            for (String m : modes) {
+                out.writeUTF(m);
+            }
+            for (int f : fingerprints) {
+                out.writeInt(f);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * {@link #toByteArray()}で変換したバイト配列から復元します。
+     *
+     * @param b バイト配列
+     * @return 復元した値
+     * @throws IllegalArgumentException バイト配列が正しくない場合
+     * @throws NullPointerException     バイト配列がnullの場合
+     */
+    public static Checkpoint fromByteArray(byte[] b) {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(Objects.requireNonNull(b));
+        try (DataInputStream in = new DataInputStream(bytes)) {
+            if (in.readUnsignedByte() != VERSION) {
+                throw new IllegalArgumentException("Unsupported version");
+            }
+            long charOffset = in.readLong();
+            long byteOffset = in.readLong();
+            String charset = in.readUTF();
+            int line = in.readInt();
+            long lineStart = in.readLong();
+            long prevLineStart = in.readLong();
+            long crEnd = in.readLong();
+            String[] modes = new String[in.readUnsignedShort()];
+            for (int i = 0; i < modes.length; i++) {
+                modes[i] = in.readUTF();
+            }
+            int[] fingerprints = new int[modes.length + 1];
+            for (int i = 0; i < fingerprints.length; i++) {
+                fingerprints[i] = in.readInt();
+            }
+            if (bytes.available() > 0 || charOffset < 0 || line < 1 || lineStart > charOffset
+                    || (byteOffset >= 0 && charset.isEmpty())) {
+                throw new IllegalArgumentException("Malformed checkpoint");
+            }
+            return new Checkpoint(charOffset, byteOffset, charset, line, lineStart, prevLineStart, crEnd,
+                    modes.length == 0 ? NO_MODES : modes, fingerprints);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Malformed checkpoint", ex);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Checkpoint)) {
+            return false;
+        }
+        Checkpoint other = (Checkpoint) obj;
+        return charOffset == other.charOffset && byteOffset == other.byteOffset
+                && Objects.equals(charset, other.charset) && line == other.line
+                && lineStart == other.lineStart && prevLineStart == other.prevLineStart
+                && crEnd == other.crEnd && Arrays.equals(modes, other.modes)
+                && Arrays.equals(fingerprints, other.fingerprints);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(charOffset, byteOffset, line, Arrays.hashCode(modes), Arrays.hashCode(fingerprints));
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint[offset=" + charOffset + ", byteOffset=" + byteOffset + ", line=" + line
+                + ", column=" + getColumnNumber() + ", modes=" + Arrays.toString(modes) + "]";
+    }
+}
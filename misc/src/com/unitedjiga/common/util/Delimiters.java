@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Lexerの引用符とコメントの区切りの設定です。
+ * 設定は不変で、LexerSpecを介して複数のLexerで共有されます。
+ *
+ * @author Junji Mikami
+ */
+final class Delimiters {
+
+    /** 引用符の文字。 */
+    final char[] quotes;
+    /** 引用符で囲まれた文字列のエスケープ文字。 */
+    final char escape;
+    /** 行コメントの開始。ない場合はnull。 */
+    final char[] lineComment;
+    /** ブロックコメントの開始。ない場合はnull。 */
+    final char[] blockOpen;
+    /** ブロックコメントの終了。 */
+    final char[] blockClose;
+    /** コメントをトークンとして返す場合にtrue。falseの場合は空白として読み飛ばします。 */
+    final boolean reportComments;
+
+    Delimiters(char[] quotes, char escape, char[] lineComment, char[] blockOpen, char[] blockClose,
+            boolean reportComments) {
+        this.quotes = quotes;
+        this.escape = escape;
+        this.lineComment = lineComment;
+        this.blockOpen = blockOpen;
+        this.blockClose = blockClose;
+        this.reportComments = reportComments;
+    }
+
+    /**
+     * 設定から求めた、プロセスに依存しないハッシュ値を返します。
+     */
+    int fingerprint() {
+        int h = Arrays.hashCode(quotes);
+        h = 31 * h + escape;
+        h = 31 * h + Arrays.hashCode(lineComment);
+        h = 31 * h + Arrays.hashCode(blockOpen);
+        h = 31 * h + Arrays.hashCode(blockClose);
+        return 31 * h + (reportComments ? 1 : 0);
+    }
+
+    boolean isQuote(char c) {
+        for (char q : quotes) {
+            if (q == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * エスケープ文字の後の文字を、それが表す文字に変換します。
+     */
+    static char unescape(char c) {
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        default:
+            return c;
+        }
+    }
+}
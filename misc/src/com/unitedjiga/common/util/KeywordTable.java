@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lexerがワードトークンをキーワードに分類するための不変の表です。
+ * キーワードは完全ハッシュで格納され、Lexerはワードを走査したときにバッファの文字から直接キーワードの番号を求めます。
+ * 分類にはワードの文字列の生成、{@code equals}の呼び出し、ボックス化は必要ありません。
+ *
+ * <p>
+ * 完全ハッシュは2段階で、キーワードをハッシュ値でバケットに振り分け、
+ * バケットごとにキーワードが他と衝突しない格納位置になる変位を構築時に探索します(hash-and-displace)。
+ * 表の大きさと構築時間はキーワードの数にほぼ比例します。
+ * 検索はハッシュで選んだ1つの候補とだけ比較するため、キーワードの数に関わらず一定の時間で終わります。
+ * キーワードの番号は指定した順に0から数えます。
+ * このクラスのインスタンスは不変で、スレッドセーフです。
+ *
+ * <pre>
+ * {@code
+ * static final KeywordTable KEYWORDS = KeywordTable.of("if", "else", "while", "return");
+ * ...
+ * switch (lexer.peekKeywordId()) {
+ * case 0: // if
+ *     ...
+ * }
+ * }
+ * </pre>
+ *
+ * @author Junji Mikami
+ * @see LexerSpec.Builder#keywords(KeywordTable)
+ * @see Lexer#keywordId()
+ */
+public final class KeywordTable {
+
+    /** バケットあたりの変位の探索の上限。超えた場合はハッシュ関数の種を変えて構築し直します。 */
+    private static final int MAX_DISPLACEMENTS = 1 << 16;
+
+    private final String[] keywords;
+    private final char[][] chars;
+    /** バケットごとの変位。 */
+    private final int[] displacements;
+    private final int[] slots;
+    private final int mask;
+    private final int seed;
+    private final int minLength;
+    private final int maxLength;
+
+    private KeywordTable(String[] keywords) {
+        this.keywords = keywords;
+        chars = new char[keywords.length][];
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int i = 0; i < keywords.length; i++) {
+            chars[i] = keywords[i].toCharArray();
+            min = Math.min(min, chars[i].length);
+            max = Math.max(max, chars[i].length);
+        }
+        minLength = min;
+        maxLength = max;
+        // 格納位置はキーワードの数の2倍以上4倍未満、バケットはキーワード2つあたりに1つです。
+        int size = Integer.highestOneBit(Math.max(1, keywords.length) * 2 - 1) * 2;
+        int[] table = new int[size];
+        int[] d = new int[Math.max(1, keywords.length / 2)];
+        int s = 1;
+        while (!place(table, d, s)) {
+            s++;
+        }
+        displacements = d;
+        slots = table;
+        mask = size - 1;
+        seed = s;
+    }
+
+    /**
+     * 指定のキーワードの表を返します。
+     *
+     * @param keywords キーワード
+     * @return 新しい表
+     * @throws NullPointerException     キーワードにnullが含まれる場合
+     * @throws IllegalArgumentException キーワードが重複しているか、空文字列が含まれる場合
+     */
+    public static KeywordTable of(String... keywords) {
+        String[] copy = keywords.clone();
+        Set<String> set = new HashSet<>();
+        for (String k : copy) {
+            if (k.isEmpty() || !set.add(k)) {
+                throw new IllegalArgumentException(k);
+            }
+        }
+        return new KeywordTable(copy);
+    }
+
+    /**
+     * キーワードの数を返します。
+     *
+     * @return キーワードの数
+     */
+    public int size() {
+        return keywords.length;
+    }
+
+    /**
+     * 指定の番号のキーワードを返します。
+     *
+     * @param id キーワードの番号
+     * @return キーワード
+     * @throws IndexOutOfBoundsException 番号が範囲外の場合
+     */
+    public String keyword(int id) {
+        return keywords[id];
+    }
+
+    /**
+     * 指定の文字列のキーワードの番号を返します。
+     *
+     * @param s 文字列
+     * @return キーワードの番号。キーワードではない場合は-1
+     */
+    public int keywordId(CharSequence s) {
+        int n = s.length();
+        if (n < minLength || n > maxLength) {
+            return -1;
+        }
+        long h = seed;
+        for (int i = 0; i < n; i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        int id = slots[slot(h) & mask] - 1;
+        return id >= 0 && keywords[id].contentEquals(s) ? id : -1;
+    }
+
+    /**
+     * 文字配列の指定の範囲のキーワードの番号を返します。
+     *
+     * @return キーワードの番号。キーワードではない場合は-1
+     */
+    int lookup(char[] a, int from, int to) {
+        int n = to - from;
+        if (n < minLength || n > maxLength) {
+            return -1;
+        }
+        long h = seed;
+        for (int i = from; i < to; i++) {
+            h = (h ^ a[i]) * 0x100000001B3L;
+        }
+        int id = slots[slot(h) & mask] - 1;
+        return id >= 0 && Arrays.equals(chars[id], 0, chars[id].length, a, from, to) ? id : -1;
+    }
+
+    /**
+     * 指定の種ですべてのキーワードを衝突なく格納できるかを試します。
+     * 大きいバケットから順に、バケットのキーワードがすべて空きに入る最小の変位を探します。
+     * 表の要素はキーワードの番号に1を加えた値で、空きは0です。
+     */
+    private boolean place(int[] table, int[] d, int s) {
+        Arrays.fill(table, 0);
+        Arrays.fill(d, 0);
+        int mask = table.length - 1;
+        int n = chars.length;
+        long[] hashes = new long[n];
+        for (int id = 0; id < n; id++) {
+            long h = s;
+            for (char c : chars[id]) {
+                h = (h ^ c) * 0x100000001B3L;
+            }
+            hashes[id] = mix(h);
+        }
+        // バケットごとのキーワードを、バケットの大きさの降順に並べます。
+        int[] start = new int[d.length + 1];
+        for (int id = 0; id < n; id++) {
+            start[bucket(hashes[id], d.length) + 1]++;
+        }
+        int maxSize = 0;
+        for (int b = 0; b < d.length; b++) {
+            maxSize = Math.max(maxSize, start[b + 1]);
+            start[b + 1] += start[b];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(start, d.length);
+        for (int id = 0; id < n; id++) {
+            members[fill[bucket(hashes[id], d.length)]++] = id;
+        }
+        int[] order = new int[d.length];
+        int[] sizeStart = new int[maxSize + 2];
+        for (int b = 0; b < d.length; b++) {
+            sizeStart[maxSize - (start[b + 1] - start[b]) + 1]++;
+        }
+        for (int k = 0; k <= maxSize; k++) {
+            sizeStart[k + 1] += sizeStart[k];
+        }
+        for (int b = 0; b < d.length; b++) {
+            order[sizeStart[maxSize - (start[b + 1] - start[b])]++] = b;
+        }
+        for (int b : order) {
+            int from = start[b];
+            int to = start[b + 1];
+            if (from == to) {
+                break;
+            }
+            int disp = 0;
+            search: for (;; disp++) {
+                if (disp == MAX_DISPLACEMENTS) {
+                    return false;
+                }
+                for (int i = from; i < to; i++) {
+                    int slot = displace(hashes[members[i]], disp) & mask;
+                    if (table[slot] != 0) {
+                        for (int j = from; j < i; j++) {
+                            table[displace(hashes[members[j]], disp) & mask] = 0;
+                        }
+                        continue search;
+                    }
+                    table[slot] = members[i] + 1;
+                }
+                break;
+            }
+            d[b] = disp;
+        }
+        return true;
+    }
+
+    /**
+     * ハッシュ値の格納位置を返します。
+     * 上位32ビットでバケットを選び、下位32ビットをバケットの変位で混ぜて格納位置を求めます。
+     * 32ビットのハッシュ値では数万以上のキーワードで衝突が避けられず、変位で分けられないため、64ビットで求めます。
+     */
+    private int slot(long h) {
+        h = mix(h);
+        return displace(h, displacements[bucket(h, displacements.length)]);
+    }
+
+    private static int bucket(long h, int buckets) {
+        return (int) (((h >>> 32) * buckets) >>> 32);
+    }
+
+    private static int displace(long h, int disp) {
+        int x = (int) h + disp * 0x9E3779B9;
+        x = (x ^ (x >>> 16)) * 0x85EBCA6B;
+        x = (x ^ (x >>> 13)) * 0xC2B2AE35;
+        return x ^ (x >>> 16);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    @Override
+    public String toString() {
+        return "KeywordTable" + Arrays.toString(keywords);
+    }
+
+    /**
+     * キーワードとその順序から求めた、プロセスに依存しないハッシュ値を返します。
+     */
+    int fingerprint() {
+        return Arrays.hashCode(keywords);
+    }
+}
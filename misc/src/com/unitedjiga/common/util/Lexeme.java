@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.Objects;
+
+/**
+ * Lexerが分割したトークンを、直前にスキップした空白とともに保持する値です。
+ * Lexerの反復処理とは独立して保持できるため、並列に字句解析した結果の受け渡しに使用します。
+ *
+ * @author Junji Mikami
+ * @see Lexer#lexParallel(CharSequence, LexerSpec)
+ */
+public final class Lexeme {
+
+    private final String text;
+    private final String skippedWhitespace;
+    private final boolean word;
+
+    Lexeme(String text, String skippedWhitespace, boolean word) {
+        this.text = text;
+        this.skippedWhitespace = skippedWhitespace;
+        this.word = word;
+    }
+
+    /**
+     * トークンの文字列を返します。
+     *
+     * @return トークンの文字列
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * トークンの直前にスキップした空白の文字列を返します。
+     *
+     * @return スキップした空白の文字列。空白をスキップしていない場合、長さ0の文字列。
+     */
+    public String getSkippedWhitespace() {
+        return skippedWhitespace;
+    }
+
+    /**
+     * ワードトークンの場合にtrueを返します。
+     *
+     * @return ワードトークンの場合にtrue。文字トークンの場合はfalse
+     */
+    public boolean isWord() {
+        return word;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Lexeme)) {
+            return false;
+        }
+        Lexeme other = (Lexeme) obj;
+        return word == other.word && text.equals(other.text)
+                && skippedWhitespace.equals(other.skippedWhitespace);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, skippedWhitespace, word);
+    }
+
+    @Override
+    public String toString() {
+        return word ? "WORD\"" + text + "\"" : "CHAR'" + text + "'";
+    }
+}
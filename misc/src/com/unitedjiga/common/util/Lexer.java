@@ -23,25 +23,44 @@
  */
 package com.unitedjiga.common.util;
 
+import static com.unitedjiga.common.util.CharClassTable.LINE_TERMINATOR;
+import static com.unitedjiga.common.util.CharClassTable.ORDINARY;
+import static com.unitedjiga.common.util.CharClassTable.WHITESPACE;
+import static com.unitedjiga.common.util.CharClassTable.WORD;
+
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StreamTokenizer;
-import static java.io.StreamTokenizer.TT_EOF;
-import static java.io.StreamTokenizer.TT_NUMBER;
-import static java.io.StreamTokenizer.TT_WORD;
 import java.io.UncheckedIOException;
-import java.util.BitSet;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.InputMismatchException;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.stream.IntStream;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 文字ストリームを字句解析して文字とワードを読み込むLexer(=Lexical Analyzer)です。
  * 初期設定では文字ストリームをすべて文字トークンに分割します。
- * {@code '\u005Cu0000'}から{@code '\u005Cu00ff'}の範囲の文字をワード構成文字、空白文字に指定できます。
+ * 補助文字を含む任意の文字をワード構成文字、空白文字、行終端文字に指定できます。
+ * 文字は個別に指定するほか、範囲、java.lang.Character.UnicodeBlock、java.lang.Character.UnicodeScriptでも指定できます。
  * 分割されたトークンは反復処理によって取得できます。 その際空白文字はスキップされますが取得可能です。 次に例を示します。
  *
  * <pre>
@@ -64,18 +83,174 @@ import java.util.stream.IntStream;
  * このクラスはjava.util.Scannerにインスパイアされていますが、入出力エラーの扱いが異なります。
  * 基となる文字ストリームから入出力エラーが発生した場合、非チェック例外であるjava.io.UncheckedIOExceptionにラップしてスローします。
  *
+ * <p>
+ * 文字ストリームはブロック単位で内部のバッファに読み込まれ、字句解析はバッファ上で直接行われます。
+ * 遅い文字ストリームは{@link ReadAheadReader}で包むと、別のスレッドでの読み込みと字句解析が並行します。
+ * {@code '\u005Cu00ff'}より大きい文字は、指定がなければjava.io.StreamTokenizerと同様にワード構成文字として扱われます。
+ * 対になっていないサロゲートは通常文字として扱われます。
+ * 1つのトークンや空白が長い場合、バッファはその長さまで拡張されます。
+ * 信頼できない入力では{@link #setMaxTokenLength(int, LengthPolicy)}と{@link #setMaxWhitespaceLength(int, LengthPolicy)}で
+ * 長さを制限すると、保持するメモリーは入力に関わらず制限した長さと先読みの数に比例する大きさに収まります。
+ *
  * @author Junji Mikami
  * @see java.util.Scanner
  */
 public final class Lexer implements Iterator<String>, Closeable {
 
-    private final Closeable c;
-    private final StreamTokenizer st;
-    private final StringBuilder wsBuffer = new StringBuilder();
-    private final BitSet wsChars = new BitSet();
-    private final BitSet ltChars = new BitSet();
+    private static final int TT_EOF = -1;
+    private static final int TT_WORD = -3;
+    private static final int TT_OPERATOR = -4;
+    private static final int TT_QUOTE = -5;
+    private static final int TT_COMMENT = -6;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int LOOKAHEAD = 16;
+    private static final String[] CHAR_STRINGS = new String[0x100];
+
+    /*
+     * 仮数が2^53以下で、10の累乗の指数が22以下の場合、
+     * 仮数と10の累乗はどちらもdoubleで正確に表せるため、1回の乗算または除算で正しく丸めた値が得られます。
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private Reader in;
+    private CharClassTable table = CharClassTable.DEFAULT;
+    private boolean tableShared = true;
+    private TokenRules rules;
+    private KeywordTable keywords;
+    private OperatorTable operators;
+    private Delimiters delimiters;
+    private Map<String, LexerSpec> modes = Collections.emptyMap();
+    /**
+     * 現在のモードの仕様。文字設定などを変更した場合、モードの切り替えで退避する仕様は改めて作成します。
+     */
+    private LexerSpec modeSpec = LexerSpec.DEFAULT;
+    private String mode;
+    private LexerSpec[] modeStack = {};
+    private String[] modeNameStack = {};
+    private int modeDepth;
+    private WordCache cache;
+    private char[] buf = new char[BUFFER_SIZE];
+    private boolean bufShared;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    /*
+     * 先読みしたトークンの状態です。
+     * バッファ上の[wsStart, tokStart)が直前の空白、[tokStart, tokEnd)がトークンです。
+     */
+    private boolean peeked;
+    private int ttype = TT_EOF;
+    private int wsStart;
+    private int tokStart;
+    private int tokEnd;
+    private int rule = -1;
+    private int keyword = -1;
+    private int operator = -1;
+    private String token;
+    private long longValue;
+    private double doubleValue;
+
+    /*
+     * 先読みしたトークンに後続するトークンのリングバッファです。
+     * aheadHeadから順にaheadCount個のトークンがあり、配列は最初に使用するときに割り当てます。
+     */
+    private int[] aheadType;
+    private int[] aheadWsStart;
+    private int[] aheadStart;
+    private int[] aheadEnd;
+    private int[] aheadRule;
+    private int[] aheadKeyword;
+    private int[] aheadOperator;
+    private String[] aheadToken;
+    private int aheadHead;
+    private int aheadCount;
+
+    /*
+     * 現在のトークンの状態です。
+     * keepより前の文字はバッファの補充時に破棄されます。
+     * keepは通常curWsStartと同じで、nextBatchの後はバッチの先頭を指します。
+     */
+    private int keep;
+    private int curWsStart;
+    private int curStart;
+    private int curEnd;
+    private int curRule = -1;
+    private int curKeyword = -1;
+    private int curOperator = -1;
     private String ws = "";
 
+    /*
+     * 位置の状態です。
+     * baseはバッファの先頭の文字の入力全体でのオフセットで、バッファを詰めるたびに加算されます。
+     * 行番号は行終端文字のトークンを消費したときに数えます。
+     */
+    private long base;
+    private boolean tracking = true;
+    private int line = 1;
+    private long lineStart;
+    private long prevLineStart;
+    private long crEnd = -1;
+    private int curLine = 1;
+    private long curLineStart;
+
+    /*
+     * トークンと空白の長さの制限です。
+     * 走査中の範囲がcapFromからcapMaxを超えると、バッファを補充する前にcapPolicyに従って処理します。
+     * 切り詰めて破棄した範囲は、破棄した位置とその長さをgapAtとgapLenに記録し、オフセットに加えます。
+     * バッファを詰めて先頭より前になった範囲の長さはdroppedに移します。
+     */
+    private int maxToken = Integer.MAX_VALUE;
+    private LengthPolicy tokenPolicy = LengthPolicy.FAIL;
+    private int maxWhitespace = Integer.MAX_VALUE;
+    private LengthPolicy whitespacePolicy = LengthPolicy.FAIL;
+    private int capFrom = -1;
+    private int capMax;
+    private LengthPolicy capPolicy;
+    private int[] gapAt = {};
+    private long[] gapLen = {};
+    private int gaps;
+    private long dropped;
+
+    private final CharSequence tokenView = new View() {
+        @Override
+        int start() {
+            return curStart;
+        }
+
+        @Override
+        int end() {
+            return curEnd;
+        }
+    };
+    private final CharSequence skippedView = new View() {
+        @Override
+        int start() {
+            return curWsStart;
+        }
+
+        @Override
+        int end() {
+            return curStart;
+        }
+    };
+    private final CharSequence trailingView = new View() {
+        @Override
+        int start() {
+            return wsStart;
+        }
+
+        @Override
+        int end() {
+            peekToken();
+            return tokStart;
+        }
+    };
+
     /**
      * 指定の文字ストリームを字句解析する新しいLexerを構築します。
      *
@@ -83,352 +258,2661 @@ public final class Lexer implements Iterator<String>, Closeable {
      * @throws NullPointerException 指定の文字ストリームがnullの場合
      */
     public Lexer(Reader r) {
-        c = Objects.requireNonNull(r);
-        st = new StreamTokenizer(r);
-        st.eolIsSignificant(false);
-        st.lowerCaseMode(false);
-        st.slashSlashComments(false);
-        st.slashStarComments(false);
-        st.resetSyntax();
-    }
-
-    private boolean tryGet(BitSet bit, int c) {
-        return c >= 0 && bit.get(c);
-    }
-
-    private int nextToken() {
-        try {
-            st.nextToken();
-            while (tryGet(wsChars, st.ttype)) {
-                wsBuffer.append((char) st.ttype);
-                st.nextToken();
-            }
-            return st.ttype;
-        } catch (IOException ex) {
-            throw new UncheckedIOException(ex);
-        }
+        in = Objects.requireNonNull(r);
     }
 
-    private int peekToken() {
-        try {
-            return nextToken();
-        } finally {
-            st.pushBack();
-        }
+    /**
+     * 指定の文字ストリームを指定の仕様で字句解析する新しいLexerを構築します。
+     * 仕様の文字設定は複製されずに共有されます。
+     * 構築後に文字設定を変更した場合、変更はこのLexerにだけ反映されます。
+     *
+     * @param r    文字ストリーム
+     * @param spec 仕様
+     * @throws NullPointerException 指定の文字ストリームまたは仕様がnullの場合
+     */
+    public Lexer(Reader r, LexerSpec spec) {
+        in = Objects.requireNonNull(r);
+        apply(spec);
+        modes = spec.modes;
     }
 
     /**
-     * 次のトークンがある場合にtrueを返します。
+     * 指定の文字列を指定の仕様で字句解析する新しいLexerを構築します。
+     * 文字列は複製されてバッファとして使用されます。
+     * {@link #tokens()}のストリームを並列に処理する際、文字列は空白文字または行終端文字の位置で分割されます。
      *
-     * @return 次のトークンがある場合にtrue
-     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @param input 文字列
+     * @param spec  仕様
+     * @throws NullPointerException 指定の文字列または仕様がnullの場合
      */
-    @Override
-    public boolean hasNext() {
-        return peekToken() != TT_EOF;
+    public Lexer(CharSequence input, LexerSpec spec) {
+        this(toCharArray(input), 0, input.length(), spec);
     }
 
     /**
-     * 次のトークンがワードトークンの場合にtrueを返します。
+     * 指定のバイトストリームを指定の仕様で字句解析する新しいLexerを構築します。
+     * US-ASCII、ISO-8859-1、UTF-8、Shift_JISのバイトストリームは、文字セットごとのループで中間のバッファを介さずにLexerのバッファへデコードされます。
+     * ASCII文字の並びは8バイトずつデコードされ、UTF-8の複数バイトの文字は出現した場合にだけデコードされます。
+     * 不正な入力はjava.io.InputStreamReaderと同様に置換文字に置き換えられます。
      *
-     * @return 次のトークンがワードトークンの場合にtrue
-     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @param in   バイトストリーム
+     * @param cs   バイトストリームの文字セット
+     * @param spec 仕様
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public boolean hasNextWord() {
-        return peekToken() == TT_WORD;
+    public Lexer(InputStream in, Charset cs, LexerSpec spec) {
+        this(new ByteReader(Objects.requireNonNull(in), cs), spec);
     }
 
     /**
-     * 次のトークンが文字トークンの場合にtrueを返します。
+     * 指定のバイトストリームを、指定のデコーダーの文字セットと仕様で字句解析する新しいLexerを構築します。
+     * 不正な入力とマップできない文字は、デコーダーに設定されたアクションに従って置換、無視、または報告されます。
+     * 報告する場合、デコードできないバイト列の直前までのトークンを返した後で、
+     * java.nio.charset.CharacterCodingExceptionをラップしたjava.io.UncheckedIOExceptionがスローされます。
+     * デコードは{@link #Lexer(InputStream, Charset, LexerSpec)}と同様ですが、
+     * デコーダーの置換文字列が置換文字でない場合はデコーダーでデコードされます。
+     * デコーダーはこのLexerが使用し、他で使用してはいけません。
      *
-     * @return 次のトークンが文字トークンの場合にtrueを返します。
-     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @param in      バイトストリーム
+     * @param decoder デコーダー
+     * @param spec    仕様
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public boolean hasNextChar() {
-        return peekToken() >= 0;
+    public Lexer(InputStream in, CharsetDecoder decoder, LexerSpec spec) {
+        this(new ByteReader(Objects.requireNonNull(in), decoder, 0), spec);
     }
 
     /**
-     * 
-     * @return
+     * 指定のバイトバッファを指定の仕様で字句解析する新しいLexerを構築します。
+     * バイトバッファの位置から上限までを字句解析し、バイトバッファの位置は変更しません。
+     * バイト配列はjava.nio.ByteBuffer#wrap(byte[])でラップして指定できます。
+     * デコードは{@link #Lexer(InputStream, Charset, LexerSpec)}と同様です。
+     *
+     * @param bb   バイトバッファ
+     * @param cs   バイトバッファの文字セット
+     * @param spec 仕様
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public boolean hasNextInLine() {
-        return hasNext() && !tryGet(ltChars, st.ttype);
+    public Lexer(ByteBuffer bb, Charset cs, LexerSpec spec) {
+        this(new ByteReader(bb, cs), spec);
     }
 
     /**
-     * 
-     * @return
+     * 文字配列の指定の範囲を字句解析するLexerを構築します。
+     * 文字配列は複製されずにバッファとして使用され、変更されません。
      */
-    public boolean hasTrailingWhitespace() {
-        return !trailingWhitespace().isEmpty();
+    Lexer(char[] a, int from, int to, LexerSpec spec) {
+        in = Reader.nullReader();
+        apply(spec);
+        modes = spec.modes;
+        buf = a;
+        bufShared = true;
+        wsStart = from;
+        keep = from;
+        curWsStart = from;
+        curStart = from;
+        curEnd = from;
+        limit = to;
+        eof = true;
     }
 
     /**
-     * 次のトークンを返します。
+     * 指定のファイルを指定の仕様で字句解析する新しいLexerを返します。
+     * 通常のファイルはメモリーマップされ、{@link #Lexer(InputStream, Charset, LexerSpec)}と同様にLexerのバッファへ直接デコードされます。
+     * 2GBを超えるファイルは窓単位でマップされます。
+     * 2GB以下のファイルは{@link #tokens()}のストリームを並列に処理する際に分割できます。
+     * メモリーマップできない場合は文字ストリームとして読み込みます。
+     * 不正な入力はjava.io.InputStreamReaderと同様に置換文字に置き換えられます。
      *
-     * @return 次のトークン
-     * @throws NoSuchElementException トークンがこれ以上ない場合
-     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @param path ファイルのパス
+     * @param cs   ファイルの文字セット
+     * @param spec 仕様
+     * @return 新しいLexer
+     * @throws IOException          ファイルを開く際に入出力エラーが発生した場合
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    @Override
-    public String next() {
-        switch (nextToken()) {
-        case TT_EOF:
-            throw new NoSuchElementException();
-
-        case TT_NUMBER:
-            throw new AssertionError();
-
-        case TT_WORD:
-            ws = wsBuffer.toString();
-            wsBuffer.setLength(0);
-            return st.sval;
-
-        default:
-            ws = wsBuffer.toString();
-            wsBuffer.setLength(0);
-            return String.valueOf((char) st.ttype);
-        }
+    public static Lexer open(Path path, Charset cs, LexerSpec spec) throws IOException {
+        Objects.requireNonNull(spec);
+        return open(path, ByteReader.replacing(cs), spec, 0);
     }
 
     /**
-     * 次のトークンをワードトークンとして返します。
+     * 指定のファイルを、指定のデコーダーの文字セットと仕様で字句解析する新しいLexerを返します。
+     * ファイルの読み込みは{@link #open(Path, Charset, LexerSpec)}と同様で、
+     * デコードできないバイト列の処理は{@link #Lexer(InputStream, CharsetDecoder, LexerSpec)}と同様です。
      *
-     * @return 次のワードトークン
-     * @throws NoSuchElementException トークンがこれ以上ない場合
-     * @throws InputMismatchException 次のトークンがワードトークンではない場合
-     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @param path    ファイルのパス
+     * @param decoder デコーダー
+     * @param spec    仕様
+     * @return 新しいLexer
+     * @throws IOException          ファイルを開く際に入出力エラーが発生した場合
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public String nextWord() {
-        switch (nextToken()) {
-        case TT_EOF:
-            throw new NoSuchElementException();
-
-        case TT_NUMBER:
-            throw new AssertionError();
-
-        case TT_WORD:
-            ws = wsBuffer.toString();
-            wsBuffer.setLength(0);
-            return st.sval;
-
-        default:
-            throw new InputMismatchException();
-        }
+    public static Lexer open(Path path, CharsetDecoder decoder, LexerSpec spec) throws IOException {
+        Objects.requireNonNull(decoder);
+        Objects.requireNonNull(spec);
+        return open(path, decoder, spec, 0);
     }
 
     /**
-     * 次のトークンを文字トークンとして返します。
+     * 指定のファイルを、{@link #checkpoint()}で中断した位置から字句解析する新しいLexerを返します。
+     * 返されるLexerは、中断したLexerがその後に返すはずだったトークンの並びを、同じオフセットと行番号で返します。
+     * 中断点のバイトオフセットがわかり、文字セットが同じ場合はファイルをその位置から読み込みます。
+     * それ以外の場合は、ファイルの先頭から中断点のオフセットまでの文字を読み飛ばします。
+     * 中断した時点で切り替えていたモードは、同じ順に切り替え直します。
+     * ファイルの読み込みは{@link #open(Path, Charset, LexerSpec)}と同様です。
      *
-     * @return 次の文字トークン
-     * @throws NoSuchElementException トークンがこれ以上ない場合
-     * @throws InputMismatchException 次のトークンが文字トークンではない場合
-     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @param path       ファイルのパス
+     * @param cs         ファイルの文字セット
+     * @param spec       中断したLexerと同じ仕様
+     * @param checkpoint 中断点
+     * @return 新しいLexer
+     * @throws IOException              ファイルを開く際に入出力エラーが発生した場合、
+     *                                  またはファイルが中断点のオフセットより短い場合
+     * @throws IllegalArgumentException 中断した時点のモードがない場合、
+     *                                  またはスタックのいずれかの段の設定が中断した時点の設定と異なる場合
+     * @throws NullPointerException     引数のいずれかがnullの場合
      */
-    public char nextChar() {
-        switch (nextToken()) {
-        case TT_EOF:
-            throw new NoSuchElementException();
-
-        case TT_NUMBER:
-            throw new AssertionError();
-
-        case TT_WORD:
-            throw new InputMismatchException();
-
-        default:
-            ws = wsBuffer.toString();
-            wsBuffer.setLength(0);
-            return (char) st.ttype;
+    public static Lexer open(Path path, Charset cs, LexerSpec spec, Checkpoint checkpoint) throws IOException {
+        Objects.requireNonNull(spec);
+        long byteOffset = checkpoint.getByteOffset();
+        boolean seek = byteOffset >= 0 && cs.name().equals(checkpoint.getCharsetName());
+        Lexer lexer = open(path, ByteReader.replacing(cs), spec, seek ? byteOffset : 0);
+        try {
+            // スタックに積まれるモードの設定も、popMode()で戻った後のトークンを変えるため比較します。
+            String[] modes = checkpoint.modes();
+            int[] fingerprints = checkpoint.fingerprints();
+            for (int i = 0; i <= modes.length; i++) {
+                if (lexer.currentSpec().fingerprint() != fingerprints[i]) {
+                    throw new IllegalArgumentException("Specification does not match the checkpoint");
+                }
+                if (i < modes.length) {
+                    lexer.pushMode(modes[i]);
+                }
+            }
+            if (!seek) {
+                lexer.skipFully(checkpoint.getCharOffset());
+            }
+        } catch (IOException | RuntimeException ex) {
+            lexer.in.close();
+            throw ex;
         }
+        lexer.base = checkpoint.getCharOffset();
+        lexer.line = checkpoint.getLineNumber();
+        lexer.lineStart = checkpoint.lineStart();
+        lexer.prevLineStart = checkpoint.prevLineStart();
+        lexer.crEnd = checkpoint.crEnd();
+        lexer.curLine = lexer.line;
+        lexer.curLineStart = lexer.lineStart;
+        return lexer;
     }
 
     /**
-     * 次のトークンを返しますが、反復処理は進みません。
-     *
-     * @return 次のトークン
-     * @throws NoSuchElementException トークンがこれ以上ない場合
-     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * 指定のファイルを、指定のバイトオフセットから字句解析する新しいLexerを返します。
      */
-    public String peek() {
-        switch (peekToken()) {
-        case TT_EOF:
-            throw new NoSuchElementException();
-
-        case TT_NUMBER:
-            throw new AssertionError();
-
-        case TT_WORD:
-            return st.sval;
-
-        default:
-            return String.valueOf((char) st.ttype);
+    static Lexer open(Path path, CharsetDecoder decoder, LexerSpec spec, long start) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            try {
+                long size = channel.size();
+                if (Files.isRegularFile(path) && size > start) {
+                    if (size - start > Integer.MAX_VALUE) {
+                        return new Lexer(new ByteReader(channel, decoder, start), spec);
+                    }
+                    // マップしたバッファはチャネルを閉じた後も有効です。
+                    ByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, start, size - start);
+                    channel.close();
+                    return new Lexer(new ByteReader(bb, decoder, start), spec);
+                }
+            } catch (IOException | UnsupportedOperationException ex) {
+                // メモリーマップできないファイルは文字ストリームとして読み込みます。
+            }
+            if (start > 0) {
+                channel.position(start);
+            }
+            return new Lexer(new InputStreamReader(Channels.newInputStream(channel), decoder), spec);
+        } catch (IOException | RuntimeException | Error ex) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ex.addSuppressed(e);
+            }
+            throw ex;
         }
     }
 
     /**
-     * 次のトークンをワードトークンとして返しますが、反復処理は進みません。
-     *
-     * @return 次のワードトークン
-     * @throws NoSuchElementException トークンがこれ以上ない場合
-     * @throws InputMismatchException 次のトークンがワードトークンではない場合
-     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * 文字ストリームから指定の数の文字を読み飛ばします。
      */
-    public String peekWord() {
-        switch (peekToken()) {
-        case TT_EOF:
-            throw new NoSuchElementException();
-
-        case TT_NUMBER:
-            throw new AssertionError();
-
-        case TT_WORD:
-            return st.sval;
-
-        default:
-            throw new InputMismatchException();
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long k = in.skip(n);
+            if (k == 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                k = 1;
+            }
+            n -= k;
         }
     }
 
     /**
-     * 次のトークンを文字トークンとして返しますが、反復処理は進みません。
+     * 指定の文字列を指定の仕様で並列に字句解析します。
+     * {@link #lexParallel(CharSequence, LexerSpec, ForkJoinPool)}を共通プールで実行します。
      *
-     * @return 次の文字トークン
-     * @throws NoSuchElementException トークンがこれ以上ない場合
-     * @throws InputMismatchException 次のトークンが文字トークンではない場合
-     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @param input 文字列
+     * @param spec  仕様
+     * @return 入力の順序で並んだトークンのストリーム
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public char peekChar() {
-        switch (peekToken()) {
-        case TT_EOF:
-            throw new NoSuchElementException();
-
-        case TT_NUMBER:
-            throw new AssertionError();
-
-        case TT_WORD:
-            throw new InputMismatchException();
-
-        default:
-            return (char) st.ttype;
-        }
+    public static Stream<Lexeme> lexParallel(CharSequence input, LexerSpec spec) {
+        return lexParallel(input, spec, ForkJoinPool.commonPool());
     }
 
     /**
-     * 現在のトークンの直前にスキップした空白の文字列を返します。
+     * 指定の文字列を指定の仕様で並列に字句解析します。
+     * 文字列は行終端文字の直後で分割され、分割された範囲ごとに指定のプールで字句解析されます。
+     * 範囲の字句解析はストリームの消費に合わせて進み、先行して字句解析される範囲はプールの並列度の2倍までです。
+     * 返されるストリームのトークンと、直前にスキップした空白は、逐次に字句解析した場合と同じです。
+     * 入力の末尾の空白はストリームに含まれません。
+     * 行終端文字を設定していない場合と、トークンの規則、演算子の表、引用符またはコメントを設定している場合、文字列は分割されません。
      *
-     * @return スキップした空白の文字列。空白をスキップしていない場合、長さ0の文字列。
+     * @param input 文字列
+     * @param spec  仕様
+     * @param pool  字句解析を実行するプール
+     * @return 入力の順序で並んだトークンのストリーム
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public String skippedWhitespace() {
-        return ws;
+    public static Stream<Lexeme> lexParallel(CharSequence input, LexerSpec spec, ForkJoinPool pool) {
+        Objects.requireNonNull(input);
+        Objects.requireNonNull(spec);
+        Objects.requireNonNull(pool);
+        return ParallelLexer.lex(input, spec, pool);
     }
 
     /**
-     * 現在のトークンに後続する空白の文字列を返します。
+     * 指定のファイルを指定の仕様で並列に字句解析します。
+     * {@link #lexParallel(Path, Charset, LexerSpec, ForkJoinPool)}を共通プールで実行します。
      *
-     * @return 後続する空白の文字列。空白が後続しな場合、長さ0の文字列。
-     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @param path ファイルのパス
+     * @param cs   ファイルの文字セット
+     * @param spec 仕様
+     * @return 入力の順序で並んだトークンのストリーム
+     * @throws IOException          ファイルを開く際に入出力エラーが発生した場合
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public String trailingWhitespace() {
-        peekToken();
-        return wsBuffer.toString();
+    public static Stream<Lexeme> lexParallel(Path path, Charset cs, LexerSpec spec) throws IOException {
+        return lexParallel(path, cs, spec, ForkJoinPool.commonPool());
     }
 
     /**
-     * 文字設定を初期状態に戻します。
+     * 指定のファイルを指定の仕様で並列に字句解析します。
+     * ファイルはバイト単位で行終端文字の直後で分割され、分割された範囲ごとにメモリーマップして指定のプールで字句解析されます。
+     * バイト単位で分割できるのは文字セットがUS-ASCII、ISO-8859-1、UTF-8の場合で、
+     * US-ASCIIとUTF-8では{@code '\u005Cu0080'}より小さい行終端文字の直後でだけ分割されます。
+     * それ以外の文字セット、トークンの規則、演算子の表、引用符またはコメントを設定した仕様、
+     * メモリーマップできないファイルは逐次に字句解析されます。
+     * 分割した範囲のバイトは{@link #lexBytes(ByteBuffer, Charset, LexerSpec)}と同様に文字に変換せずに走査されます。
+     * 返されるストリームは{@link #lexParallel(CharSequence, LexerSpec, ForkJoinPool)}と同様です。
+     * 入出力エラーはストリームの要素を取得する際にjava.io.UncheckedIOExceptionとしてスローされます。
      *
-     * @return このLexer
+     * @param path ファイルのパス
+     * @param cs   ファイルの文字セット
+     * @param spec 仕様
+     * @param pool 字句解析を実行するプール
+     * @return 入力の順序で並んだトークンのストリーム
+     * @throws IOException          ファイルを開く際に入出力エラーが発生した場合
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public Lexer reset() {
-        wsChars.clear();
-        ltChars.clear();
-        st.resetSyntax();
-        return this;
+    public static Stream<Lexeme> lexParallel(Path path, Charset cs, LexerSpec spec, ForkJoinPool pool)
+            throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(cs);
+        Objects.requireNonNull(spec);
+        Objects.requireNonNull(pool);
+        return ParallelLexer.lex(path, cs, spec, pool);
     }
 
     /**
-     * 指定の文字を通常文字に戻します。
+     * 指定のバイトバッファを指定の仕様で字句解析し、トークンのストリームを返します。
+     * バイトバッファの位置から上限までを字句解析し、バイトバッファの位置は変更しません。
+     * 文字セットがUS-ASCII、ISO-8859-1、UTF-8で、仕様にトークンの規則、演算子の表、引用符とコメントを設定していない場合は、
+     * バイトを文字に変換せずに直接走査し、ASCII文字だけのトークンの文字列をバイトから直接生成します。
+     * UTF-8の複数バイトの文字は出現した場合にだけデコードされます。
+     * 返されるストリームのトークンと、直前にスキップした空白は、{@link #Lexer(ByteBuffer, Charset, LexerSpec)}で
+     * 字句解析した場合と同じです。入力の末尾の空白はストリームに含まれません。
      *
-     * @param ch 設定する文字
-     * @return このLexer
+     * @param bb   バイトバッファ
+     * @param cs   バイトバッファの文字セット
+     * @param spec 仕様
+     * @return 入力の順序で並んだトークンのストリーム
+     * @throws NullPointerException 引数のいずれかがnullの場合
      */
-    public Lexer reset(char... ch) {
-        for (char c : ch) {
-            wsChars.clear(c);
-            ltChars.clear(c);
-            st.ordinaryChar(c);
+    public static Stream<Lexeme> lexBytes(ByteBuffer bb, Charset cs, LexerSpec spec) {
+        Objects.requireNonNull(bb);
+        Objects.requireNonNull(cs);
+        Objects.requireNonNull(spec);
+        return ByteLexer.lex(bb, cs, spec);
+    }
+
+    static char[] toCharArray(CharSequence input) {
+        if (input instanceof String) {
+            return ((String) input).toCharArray();
         }
-        return this;
+        char[] a = new char[input.length()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = input.charAt(i);
+        }
+        return a;
     }
 
     /**
-     * 
-     * @param ch
-     * @return
+     * 未消費の文字をバッファの先頭に詰めてから文字ストリームを読み込みます。
+     * 走査位置は{@code pos}で受け渡します。
+     *
+     * @return 文字を読み込んだ場合にtrue。文字ストリームの終わりに達した場合はfalse
      */
-    public Lexer setWordChars(char... ch) {
-        reset(ch);
-        for (char c : ch) {
-            st.wordChars(c, c);
+    private boolean fill() {
+        if (eof) {
+            return false;
         }
-        return this;
+        if (capFrom >= 0 && pos - capFrom > capMax) {
+            pos = cap(capFrom, pos, capMax, capPolicy);
+        }
+        int shift = keep;
+        if (shift > 0) {
+            System.arraycopy(buf, shift, buf, 0, limit - shift);
+            base += shift;
+            if (capFrom >= 0) {
+                capFrom -= shift;
+            }
+            if (gaps > 0) {
+                shiftGaps(shift);
+            }
+            limit -= shift;
+            pos -= shift;
+            wsStart -= shift;
+            tokStart -= shift;
+            tokEnd -= shift;
+            keep = 0;
+            curWsStart -= shift;
+            curStart -= shift;
+            curEnd -= shift;
+            for (int k = 0; k < aheadCount; k++) {
+                int i = (aheadHead + k) & (LOOKAHEAD - 1);
+                aheadWsStart[i] -= shift;
+                aheadStart[i] -= shift;
+                aheadEnd[i] -= shift;
+            }
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        try {
+            int n;
+            do {
+                n = in.read(buf, limit, buf.length - limit);
+            } while (n == 0);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void scan() {
+        CharClassTable table = this.table;
+        Delimiters delimiters = this.delimiters;
+        int i = wsStart;
+        capFrom = wsStart;
+        capMax = maxWhitespace;
+        capPolicy = whitespacePolicy;
+        for (;;) {
+            i = table.span(buf, i, limit, WHITESPACE);
+            if (needsMore(i)) {
+                pos = i;
+                boolean filled = fill();
+                i = pos;
+                if (!filled && i == limit) {
+                    capFrom = -1;
+                    i = cap(wsStart, i, maxWhitespace, whitespacePolicy);
+                    tokStart = tokEnd = i;
+                    ttype = TT_EOF;
+                    peeked = true;
+                    return;
+                }
+                continue;
+            }
+            if (delimiters == null) {
+                break;
+            }
+            pos = i;
+            char[] start = commentAt(delimiters);
+            i = pos;
+            if (start == null) {
+                break;
+            }
+            if (delimiters.reportComments) {
+                capFrom = -1;
+                i = cap(wsStart, i, maxWhitespace, whitespacePolicy);
+                tokStart = i;
+                pos = i;
+                capToken();
+                skipComment(delimiters, start);
+                capFrom = -1;
+                tokEnd = cap(tokStart, pos, maxToken, tokenPolicy(LengthPolicy.TRUNCATE));
+                ttype = TT_COMMENT;
+                rule = -1;
+                keyword = -1;
+                operator = -1;
+                peeked = true;
+                return;
+            }
+            skipComment(delimiters, start);
+            i = pos;
+        }
+        capFrom = -1;
+        i = cap(wsStart, i, maxWhitespace, whitespacePolicy);
+        tokStart = i;
+        rule = -1;
+        operator = -1;
+        if (delimiters != null && delimiters.isQuote(buf[i])) {
+            pos = i;
+            capToken();
+            skipQuoted(delimiters);
+            capFrom = -1;
+            tokEnd = cap(tokStart, pos, maxToken, tokenPolicy(LengthPolicy.TRUNCATE));
+            ttype = TT_QUOTE;
+            keyword = -1;
+            peeked = true;
+            return;
+        }
+        if (rules != null) {
+            if (match()) {
+                ttype = TT_WORD;
+                keyword = keywords == null ? -1 : keywords.lookup(buf, tokStart, tokEnd);
+                peeked = true;
+                return;
+            }
+            // 走査中にバッファを詰めた場合に備えて、トークンの先頭から読み直します。
+            i = tokStart;
+        }
+        int c = Character.codePointAt(buf, i, limit);
+        if (operators != null && table.classOf(c) == ORDINARY) {
+            if (matchOperator()) {
+                ttype = TT_OPERATOR;
+                keyword = -1;
+                peeked = true;
+                return;
+            }
+            i = tokStart;
+        }
+        i += Character.charCount(c);
+        if (table.classOf(c) == WORD) {
+            boolean chunk = tokenPolicy == LengthPolicy.CHUNK;
+            if (!chunk) {
+                capToken();
+            }
+            for (;;) {
+                // 分割する場合は最大長で走査を止めます。サロゲートペアの途中では止めません。
+                int to = chunk && limit - tokStart > maxToken ? Math.max(i, tokStart + maxToken) : limit;
+                i = table.span(buf, i, to, WORD);
+                if (to < limit || !needsMore(i)) {
+                    break;
+                }
+                pos = i;
+                boolean filled = fill();
+                i = pos;
+                if (!filled) {
+                    break;
+                }
+            }
+            if (!chunk) {
+                capFrom = -1;
+                i = cap(tokStart, i, maxToken, tokenPolicy);
+            }
+            ttype = TT_WORD;
+        } else {
+            ttype = c;
+        }
+        tokEnd = i;
+        keyword = ttype == TT_WORD && keywords != null ? keywords.lookup(buf, tokStart, i) : -1;
+        peeked = true;
     }
 
     /**
-     * 
-     * @param low
-     * @param hi
-     * @return
+     * 走査するトークンの長さの制限を、バッファを補充する際に適用するように設定します。
+     * 分割できない引用トークンとコメントのトークンでは、分割の代わりに切り詰めます。
      */
-    public Lexer setWordCharRange(char low, char hi) {
-        IntStream.rangeClosed(low, hi).forEach(ch -> setWordChars((char) ch));
-        return this;
+    private void capToken() {
+        capFrom = tokStart;
+        capMax = maxToken;
+        capPolicy = tokenPolicy(LengthPolicy.TRUNCATE);
+    }
+
+    private LengthPolicy tokenPolicy(LengthPolicy chunk) {
+        return tokenPolicy == LengthPolicy.CHUNK ? chunk : tokenPolicy;
     }
 
     /**
-     * 指定の文字を空白文字に設定します。
+     * バッファの指定の範囲が最大長を超えていれば、指定の方針に従って処理します。
+     * 切り詰める場合は、最大長より後ろの走査済みの文字をバッファから取り除きます。
+     * サロゲートペアは分割しないため、切り詰めた範囲は最大長より1文字短いか長い場合があります。
      *
-     * @param ch 設定する文字
-     * @return このLexer
+     * @return 処理した後の範囲の終わり
+     * @throws InputMismatchException 最大長を超えていて、方針がFAILの場合
      */
-    public Lexer setWhitespaceChars(char... ch) {
-        reset(ch);
-        for (char c : ch) {
-            wsChars.set(c);
+    private int cap(int from, int to, int max, LengthPolicy policy) {
+        if (to - from <= max) {
+            return to;
         }
-        return this;
+        if (policy == LengthPolicy.FAIL) {
+            capFrom = -1;
+            throw new InputMismatchException("Length exceeds " + max);
+        }
+        int cut = from + max;
+        if (Character.isHighSurrogate(buf[cut - 1]) && Character.isLowSurrogate(buf[cut])) {
+            cut += cut - 1 > from ? -1 : 1;
+        }
+        if (cut < to) {
+            pos = to;
+            discard(cut);
+        }
+        return cut;
     }
 
     /**
-     * 
-     * @param ch
-     * @return
+     * バッファの指定の位置から{@code pos}までの文字を取り除き、取り除いた長さをその位置に記録します。
+     * 後続の文字は詰められ、{@code pos}は指定の位置に戻ります。
      */
-    public Lexer setLineTerminatorChars(char... ch) {
-        reset(ch);
-        for (char c : ch) {
-            ltChars.set(c);
+    private void discard(int from) {
+        if (bufShared) {
+            buf = buf.clone();
+            bufShared = false;
         }
-        return this;
+        int n = pos - from;
+        System.arraycopy(buf, pos, buf, from, limit - pos);
+        limit -= n;
+        pos = from;
+        if (gaps > 0 && gapAt[gaps - 1] == from) {
+            gapLen[gaps - 1] += n;
+            return;
+        }
+        if (gaps == gapAt.length) {
+            int size = Math.max(4, gaps * 2);
+            gapAt = Arrays.copyOf(gapAt, size);
+            gapLen = Arrays.copyOf(gapLen, size);
+        }
+        gapAt[gaps] = from;
+        gapLen[gaps] = n;
+        gaps++;
     }
 
     /**
-     * 文字ストリームを閉じます。
-     *
-     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * バッファを詰めた長さだけ取り除いた位置をずらし、先頭より前になった長さをdroppedに移します。
      */
-    @Override
-    public void close() {
-        try {
-            c.close();
-        } catch (IOException ex) {
-            throw new UncheckedIOException(ex);
+    private void shiftGaps(int shift) {
+        int k = 0;
+        while (k < gaps && gapAt[k] <= shift) {
+            dropped += gapLen[k++];
         }
+        for (int g = k; g < gaps; g++) {
+            gapAt[g - k] = gapAt[g] - shift;
+            gapLen[g - k] = gapLen[g];
+        }
+        gaps -= k;
     }
 
     /**
-     * 現在のトークンに関する文字列表現を返します。
+     * バッファの指定の位置の文字の、入力の先頭からのオフセットを返します。
+     * 切り詰めて取り除いた文字もオフセットに数えます。
+     */
+    private long offsetOf(int i) {
+        long offset = base + dropped + i;
+        for (int g = 0; g < gaps && gapAt[g] <= i; g++) {
+            offset += gapLen[g];
+        }
+        return offset;
+    }
+
+    /**
+     * {@code pos}の位置がコメントの開始に一致するかを判定します。
+     *
+     * @return 一致したコメントの開始。コメントではない場合はnull
+     */
+    private char[] commentAt(Delimiters delimiters) {
+        if (delimiters.lineComment != null && lookingAt(delimiters.lineComment)) {
+            return delimiters.lineComment;
+        }
+        if (delimiters.blockOpen != null && lookingAt(delimiters.blockOpen)) {
+            return delimiters.blockOpen;
+        }
+        return null;
+    }
+
+    /**
+     * {@code pos}の位置のコメントの開始から、コメントの終わりまで{@code pos}を進めます。
+     * 行コメントは行終端文字の直前まで、ブロックコメントは終了の直後までです。
+     * 終わりがない場合は入力の終わりまで進めます。
+     */
+    private void skipComment(Delimiters delimiters, char[] start) {
+        pos += start.length;
+        if (start == delimiters.lineComment) {
+            for (;;) {
+                while (pos < limit && table.classOf(buf[pos]) != LINE_TERMINATOR) {
+                    pos++;
+                }
+                if (pos < limit || !fill()) {
+                    return;
+                }
+            }
+        }
+        char[] end = delimiters.blockClose;
+        char first = end[0];
+        for (;;) {
+            while (pos < limit && buf[pos] != first) {
+                pos++;
+            }
+            if (pos == limit) {
+                if (!fill()) {
+                    return;
+                }
+            } else if (lookingAt(end)) {
+                pos += end.length;
+                return;
+            } else {
+                pos++;
+            }
+        }
+    }
+
+    /**
+     * {@code pos}の位置の引用符から、閉じる引用符の直後まで{@code pos}を進めます。
+     * 閉じる引用符がない場合は、行終端文字の直前または入力の終わりまで進めます。
+     */
+    private void skipQuoted(Delimiters delimiters) {
+        CharClassTable table = this.table;
+        char quote = buf[pos++];
+        char escape = delimiters.escape;
+        for (;;) {
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == quote) {
+                    pos++;
+                    return;
+                }
+                if (c == escape) {
+                    break;
+                }
+                if (table.classOf(c) == LINE_TERMINATOR) {
+                    return;
+                }
+                pos++;
+            }
+            if (pos == limit) {
+                if (!fill()) {
+                    return;
+                }
+            } else if (!available(2)) {
+                pos = limit;
+                return;
+            } else if (table.classOf(buf[pos + 1]) == LINE_TERMINATOR) {
+                pos++;
+                return;
+            } else {
+                pos += 2;
+            }
+        }
+    }
+
+    /**
+     * {@code pos}の位置から指定の文字の並びが続くかを返します。判定に必要な文字は読み込みます。
+     */
+    private boolean lookingAt(char[] s) {
+        if (!available(s.length)) {
+            return false;
+        }
+        return Arrays.equals(buf, pos, pos + s.length, s, 0, s.length);
+    }
+
+    /**
+     * {@code pos}の位置から指定の数の文字をバッファに読み込みます。
+     *
+     * @return 指定の数の文字がある場合にtrue。入力の終わりに達した場合はfalse
+     */
+    private boolean available(int n) {
+        while (limit - pos < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * トークンの先頭からDFAを進め、規則に最長一致するトークンを走査します。
+     * 遷移できなくなるか入力の終わりに達するまで進み、最後に受理した位置をトークンの終わりとします。
+     *
+     * @return 規則に一致した場合にtrue
+     */
+    private boolean match() {
+        TokenRules rules = this.rules;
+        int[] accept = rules.accept;
+        int state = 0;
+        int matched = -1;
+        int length = 0;
+        int i = tokStart;
+        for (;;) {
+            if (i == limit) {
+                pos = i;
+                boolean filled = fill();
+                i = pos;
+                if (!filled) {
+                    break;
+                }
+            }
+            int next = rules.step(state, buf[i]);
+            if (next < 0) {
+                break;
+            }
+            if (i - tokStart == maxToken) {
+                // 最大長を超える最長一致は探さず、最大長までで最も長く一致した範囲をトークンとします。
+                if (tokenPolicy == LengthPolicy.FAIL) {
+                    throw new InputMismatchException("Length exceeds " + maxToken);
+                }
+                break;
+            }
+            state = next;
+            i++;
+            if (accept[state] >= 0) {
+                matched = accept[state];
+                length = i - tokStart;
+            }
+        }
+        if (matched < 0) {
+            return false;
+        }
+        rule = matched;
+        tokEnd = tokStart + length;
+        return true;
+    }
+
+    /**
+     * トークンの先頭から演算子のトライをたどり、最も長く一致する演算子を走査します。
+     *
+     * @return 演算子に一致した場合にtrue
+     */
+    private boolean matchOperator() {
+        OperatorTable operators = this.operators;
+        int node = 0;
+        int matched = -1;
+        int length = 0;
+        int i = tokStart;
+        for (;;) {
+            if (i == limit) {
+                pos = i;
+                boolean filled = fill();
+                i = pos;
+                if (!filled) {
+                    break;
+                }
+            }
+            node = operators.step(node, buf[i++]);
+            if (node < 0) {
+                break;
+            }
+            int id = operators.terminal(node);
+            if (id >= 0) {
+                matched = id;
+                length = i - tokStart;
+            }
+        }
+        if (matched < 0) {
+            return false;
+        }
+        operator = matched;
+        tokEnd = tokStart + length;
+        return true;
+    }
+
+    /**
+     * 走査が指定の位置でバッファの終わりに達し、判定のために文字ストリームの読み込みが必要かを返します。
+     * バッファの最後の文字が上位サロゲートの場合は、後続の下位サロゲートを読み込む必要があります。
+     */
+    private boolean needsMore(int i) {
+        return i == limit || i == limit - 1 && !eof && Character.isHighSurrogate(buf[i]);
+    }
+
+    private int peekToken() {
+        if (!peeked) {
+            scan();
+        }
+        return ttype;
+    }
+
+    /**
+     * 指定の数だけ先のトークンを走査し、その種類を返します。
+     * 先読みしたトークンは0番目で、1番目以降はリングバッファに格納します。
+     *
+     * @param k 先読みするトークンの位置
+     * @return トークンの種類
+     */
+    private int peekToken(int k) {
+        if (k < 0 || k > LOOKAHEAD) {
+            throw new IllegalArgumentException(String.valueOf(k));
+        }
+        int t = peekToken();
+        if (k == 0) {
+            return t;
+        }
+        if (aheadType == null) {
+            aheadType = new int[LOOKAHEAD];
+            aheadWsStart = new int[LOOKAHEAD];
+            aheadStart = new int[LOOKAHEAD];
+            aheadEnd = new int[LOOKAHEAD];
+            aheadRule = new int[LOOKAHEAD];
+            aheadKeyword = new int[LOOKAHEAD];
+            aheadOperator = new int[LOOKAHEAD];
+            aheadToken = new String[LOOKAHEAD];
+        }
+        while (aheadCount < k) {
+            int last = (aheadHead + aheadCount - 1) & (LOOKAHEAD - 1);
+            if ((aheadCount == 0 ? ttype : aheadType[last]) == TT_EOF) {
+                return TT_EOF;
+            }
+            // 先読みしたトークンを退避して後続のトークンを走査します。
+            // 走査中にバッファを詰めた場合は、退避した位置をbaseの差だけずらします。
+            int savedType = ttype;
+            int savedWsStart = wsStart;
+            int savedStart = tokStart;
+            int savedEnd = tokEnd;
+            int savedRule = rule;
+            int savedKeyword = keyword;
+            int savedOperator = operator;
+            String savedToken = token;
+            long savedBase = base;
+            wsStart = aheadCount == 0 ? tokEnd : aheadEnd[last];
+            try {
+                scan();
+                int i = (aheadHead + aheadCount) & (LOOKAHEAD - 1);
+                aheadType[i] = ttype;
+                aheadWsStart[i] = wsStart;
+                aheadStart[i] = tokStart;
+                aheadEnd[i] = tokEnd;
+                aheadRule[i] = rule;
+                aheadKeyword[i] = keyword;
+                aheadOperator[i] = operator;
+                aheadCount++;
+            } finally {
+                int shift = (int) (base - savedBase);
+                ttype = savedType;
+                wsStart = savedWsStart - shift;
+                tokStart = savedStart - shift;
+                tokEnd = savedEnd - shift;
+                rule = savedRule;
+                keyword = savedKeyword;
+                operator = savedOperator;
+                token = savedToken;
+            }
+        }
+        return aheadType[(aheadHead + k - 1) & (LOOKAHEAD - 1)];
+    }
+
+    private String aheadString(int k) {
+        if (k == 0) {
+            return tokenString();
+        }
+        int i = (aheadHead + k - 1) & (LOOKAHEAD - 1);
+        if (aheadToken[i] == null) {
+            int t = aheadType[i];
+            if (aheadKeyword[i] >= 0) {
+                aheadToken[i] = keywords.keyword(aheadKeyword[i]);
+            } else if (t == TT_OPERATOR) {
+                aheadToken[i] = operators.operator(aheadOperator[i]);
+            } else if (t == TT_WORD && cache != null) {
+                aheadToken[i] = cache.intern(buf, aheadStart[i], aheadEnd[i]);
+            } else if (t < CHAR_STRINGS.length && t >= 0) {
+                aheadToken[i] = charString(t);
+            } else {
+                aheadToken[i] = new String(buf, aheadStart[i], aheadEnd[i] - aheadStart[i]);
+            }
+        }
+        return aheadToken[i];
+    }
+
+    private void consume() {
+        keep = wsStart;
+        curWsStart = wsStart;
+        curStart = tokStart;
+        curEnd = tokEnd;
+        curRule = rule;
+        curKeyword = keyword;
+        curOperator = operator;
+        ws = null;
+        if (tracking) {
+            countLine();
+        }
+        wsStart = tokEnd;
+        token = null;
+        peeked = false;
+        if (aheadCount > 0) {
+            int i = aheadHead;
+            ttype = aheadType[i];
+            wsStart = aheadWsStart[i];
+            tokStart = aheadStart[i];
+            tokEnd = aheadEnd[i];
+            rule = aheadRule[i];
+            keyword = aheadKeyword[i];
+            operator = aheadOperator[i];
+            token = aheadToken[i];
+            aheadToken[i] = null;
+            aheadHead = (i + 1) & (LOOKAHEAD - 1);
+            aheadCount--;
+            peeked = true;
+        }
+    }
+
+    /**
+     * 現在のトークンの行を記録し、行終端文字のトークンであれば行を数えます。
+     * CRの直後のLFはCRとともに1つの行終端として数えます。
+     * 読み飛ばしたブロックコメントとコメントのトークンに含まれる行終端文字も数えます。
+     */
+    private void countLine() {
+        if (delimiters != null) {
+            countLines(curWsStart, curStart);
+        }
+        curLine = line;
+        curLineStart = lineStart;
+        if (ttype == TT_COMMENT) {
+            countLines(curStart, curEnd);
+            return;
+        }
+        if (ttype < 0 || table.classOf(ttype) != LINE_TERMINATOR) {
+            return;
+        }
+        long start = offsetOf(curStart);
+        long end = offsetOf(curEnd);
+        if (ttype == '\n' && start == crEnd) {
+            curLine = line - 1;
+            curLineStart = prevLineStart;
+        } else {
+            line++;
+            prevLineStart = lineStart;
+        }
+        lineStart = end;
+        crEnd = ttype == '\r' ? end : -1;
+    }
+
+    /**
+     * バッファの指定の範囲に含まれる行終端文字を数えます。
+     */
+    private void countLines(int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = buf[i];
+            if (table.classOf(c) != LINE_TERMINATOR) {
+                continue;
+            }
+            long end = offsetOf(i) + 1;
+            if (c != '\n' || end - 1 != crEnd) {
+                line++;
+                prevLineStart = lineStart;
+            }
+            lineStart = end;
+            crEnd = c == '\r' ? end : -1;
+        }
+    }
+
+    private String tokenString() {
+        if (token == null) {
+            if (keyword >= 0) {
+                token = keywords.keyword(keyword);
+            } else if (ttype == TT_OPERATOR) {
+                token = operators.operator(operator);
+            } else if (ttype == TT_WORD && cache != null) {
+                token = cache.intern(buf, tokStart, tokEnd);
+            } else if (ttype < CHAR_STRINGS.length && ttype >= 0) {
+                token = charString(ttype);
+            } else {
+                token = new String(buf, tokStart, tokEnd - tokStart);
+            }
+        }
+        return token;
+    }
+
+    static String charString(int c) {
+        String s = CHAR_STRINGS[c];
+        if (s == null) {
+            s = String.valueOf((char) c);
+            CHAR_STRINGS[c] = s;
+        }
+        return s;
+    }
+
+    /**
+     * 次のトークンがある場合にtrueを返します。
+     *
+     * @return 次のトークンがある場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    @Override
+    public boolean hasNext() {
+        return peekToken() != TT_EOF;
+    }
+
+    /**
+     * 次のトークンがワードトークンの場合にtrueを返します。
+     *
+     * @return 次のトークンがワードトークンの場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    public boolean hasNextWord() {
+        return peekToken() == TT_WORD;
+    }
+
+    /**
+     * 次のトークンが演算子トークンの場合にtrueを返します。
+     *
+     * @return 次のトークンが演算子トークンの場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @see LexerSpec.Builder#operators(OperatorTable)
+     */
+    public boolean hasNextOperator() {
+        return peekToken() == TT_OPERATOR;
+    }
+
+    /**
+     * 次のトークンが文字トークンの場合にtrueを返します。
+     *
+     * @return 次のトークンが文字トークンの場合にtrueを返します。
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    public boolean hasNextChar() {
+        return peekToken() >= 0;
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public boolean hasNextInLine() {
+        int t = peekToken();
+        return t != TT_EOF && !(t >= 0 && table.classOf(t) == LINE_TERMINATOR);
+    }
+
+    /**
+     * 
+     * @return
+     */
+    public boolean hasTrailingWhitespace() {
+        return !trailingWhitespace().isEmpty();
+    }
+
+    /**
+     * 次のトークンを返します。
+     *
+     * @return 次のトークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    @Override
+    public String next() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        String token = tokenString();
+        consume();
+        return token;
+    }
+
+    /**
+     * 次のトークンをワードトークンとして返します。
+     *
+     * @return 次のワードトークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンがワードトークンではない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public String nextWord() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+            String token = tokenString();
+            consume();
+            return token;
+
+        default:
+            throw new InputMismatchException();
+        }
+    }
+
+    /**
+     * 次のトークンが引用符で囲まれた引用トークンの場合にtrueを返します。
+     *
+     * @return 次のトークンが引用トークンの場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @see LexerSpec.Builder#quoteChars(char...)
+     */
+    public boolean hasNextQuoted() {
+        return peekToken() == TT_QUOTE;
+    }
+
+    /**
+     * 次のトークンがコメントのトークンの場合にtrueを返します。
+     * コメントのトークンの文字列は、開始と終了を含むコメント全体です。
+     *
+     * @return 次のトークンがコメントのトークンの場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @see LexerSpec.Builder#reportComments(boolean)
+     */
+    public boolean hasNextComment() {
+        return peekToken() == TT_COMMENT;
+    }
+
+    /**
+     * 次のトークンを引用トークンとして、引用符の内側の文字列を返します。
+     * エスケープ文字とその次の文字は、{@code \b}、{@code \t}、{@code \n}、{@code \f}、{@code \r}であれば対応する制御文字に、
+     * それ以外であれば次の文字そのものに置き換えられます。
+     * 引用符を含むトークン全体は{@link #next()}や{@link #tokenView()}で参照できます。
+     *
+     * @return 次の引用トークンの内側の文字列
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが引用トークンではない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public String nextQuoted() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_QUOTE:
+            String text = unquote();
+            consume();
+            return text;
+
+        default:
+            throw new InputMismatchException();
+        }
+    }
+
+    private String unquote() {
+        char quote = buf[tokStart];
+        char escape = delimiters.escape;
+        int from = tokStart + 1;
+        int to = tokEnd;
+        int i = from;
+        while (i < to && buf[i] != quote && buf[i] != escape) {
+            i++;
+        }
+        if (i == to || buf[i] == quote) {
+            // エスケープがない場合は範囲をそのまま文字列にします。
+            return new String(buf, from, i - from);
+        }
+        StringBuilder sb = new StringBuilder(to - from);
+        sb.append(buf, from, i - from);
+        while (i < to) {
+            char c = buf[i++];
+            if (c == quote) {
+                break;
+            }
+            if (c == escape && i < to) {
+                c = Delimiters.unescape(buf[i++]);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 次のトークンを演算子トークンとして返します。
+     * 返される文字列は演算子の表の文字列で、新しい文字列は生成されません。
+     *
+     * @return 次の演算子トークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが演算子トークンではない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #operatorId()
+     */
+    public String nextOperator() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_OPERATOR:
+            String token = operators.operator(operator);
+            consume();
+            return token;
+
+        default:
+            throw new InputMismatchException();
+        }
+    }
+
+    /**
+     * 次のトークンを文字トークンとして返します。
+     *
+     * @return 次の文字トークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが文字トークンではないか、補助文字の場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public char nextChar() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+        case TT_OPERATOR:
+        case TT_QUOTE:
+        case TT_COMMENT:
+            throw new InputMismatchException();
+
+        default:
+            if (Character.isSupplementaryCodePoint(ttype)) {
+                throw new InputMismatchException();
+            }
+            char token = (char) ttype;
+            consume();
+            return token;
+        }
+    }
+
+    /**
+     * 次のトークンを文字トークンとして、そのコードポイントを返します。
+     *
+     * @return 次の文字トークンのコードポイント
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが文字トークンではない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public int nextCodePoint() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+        case TT_OPERATOR:
+        case TT_QUOTE:
+        case TT_COMMENT:
+            throw new InputMismatchException();
+
+        default:
+            int token = ttype;
+            consume();
+            return token;
+        }
+    }
+
+    /**
+     * 次のトークンを返しますが、反復処理は進みません。
+     *
+     * @return 次のトークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public String peek() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return tokenString();
+    }
+
+    /**
+     * 次のトークンをワードトークンとして返しますが、反復処理は進みません。
+     *
+     * @return 次のワードトークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンがワードトークンではない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public String peekWord() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+            return tokenString();
+
+        default:
+            throw new InputMismatchException();
+        }
+    }
+
+    /**
+     * 次のトークンを文字トークンとして返しますが、反復処理は進みません。
+     *
+     * @return 次の文字トークン
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが文字トークンではないか、補助文字の場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public char peekChar() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+        case TT_OPERATOR:
+        case TT_QUOTE:
+        case TT_COMMENT:
+            throw new InputMismatchException();
+
+        default:
+            if (Character.isSupplementaryCodePoint(ttype)) {
+                throw new InputMismatchException();
+            }
+            return (char) ttype;
+        }
+    }
+
+    /**
+     * 次のトークンを文字トークンとして、そのコードポイントを返しますが、反復処理は進みません。
+     *
+     * @return 次の文字トークンのコードポイント
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが文字トークンではない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public int peekCodePoint() {
+        switch (peekToken()) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+        case TT_OPERATOR:
+        case TT_QUOTE:
+        case TT_COMMENT:
+            throw new InputMismatchException();
+
+        default:
+            return ttype;
+        }
+    }
+
+    /**
+     * 指定の数だけ先のトークンを返しますが、反復処理は進みません。
+     * {@code peek(0)}は{@link #peek()}と同じです。
+     * 先読みしたトークンは最大16個先まで保持され、繰り返し先読みしても再び走査されることはありません。
+     *
+     * @param k 先読みするトークンの位置
+     * @return 指定の数だけ先のトークン
+     * @throws IllegalArgumentException 位置が0より小さいか16より大きい場合
+     * @throws NoSuchElementException   指定の位置にトークンがない場合
+     * @throws UncheckedIOException     入出力エラーが発生した場合
+     */
+    public String peek(int k) {
+        if (peekToken(k) == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return aheadString(k);
+    }
+
+    /**
+     * 指定の数だけ先のトークンをワードトークンとして返しますが、反復処理は進みません。
+     *
+     * @param k 先読みするトークンの位置
+     * @return 指定の数だけ先のワードトークン
+     * @throws IllegalArgumentException 位置が0より小さいか16より大きい場合
+     * @throws NoSuchElementException   指定の位置にトークンがない場合
+     * @throws InputMismatchException   指定の位置のトークンがワードトークンではない場合
+     * @throws UncheckedIOException     入出力エラーが発生した場合
+     * @see #peek(int)
+     */
+    public String peekWord(int k) {
+        switch (peekToken(k)) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+            return aheadString(k);
+
+        default:
+            throw new InputMismatchException();
+        }
+    }
+
+    /**
+     * 指定の数だけ先のトークンを文字トークンとして返しますが、反復処理は進みません。
+     *
+     * @param k 先読みするトークンの位置
+     * @return 指定の数だけ先の文字トークン
+     * @throws IllegalArgumentException 位置が0より小さいか16より大きい場合
+     * @throws NoSuchElementException   指定の位置にトークンがない場合
+     * @throws InputMismatchException   指定の位置のトークンが文字トークンではないか、補助文字の場合
+     * @throws UncheckedIOException     入出力エラーが発生した場合
+     * @see #peek(int)
+     */
+    public char peekChar(int k) {
+        int t = peekToken(k);
+        switch (t) {
+        case TT_EOF:
+            throw new NoSuchElementException();
+
+        case TT_WORD:
+        case TT_OPERATOR:
+        case TT_QUOTE:
+        case TT_COMMENT:
+            throw new InputMismatchException();
+
+        default:
+            if (Character.isSupplementaryCodePoint(t)) {
+                throw new InputMismatchException();
+            }
+            return (char) t;
+        }
+    }
+
+    /**
+     * 次のトークンに一致したトークンの規則の番号を返しますが、反復処理は進みません。
+     *
+     * @return 規則の番号。次のトークンが規則に一致しなかった場合は-1
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #ruleId()
+     */
+    public int peekRuleId() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return rule;
+    }
+
+    /**
+     * 指定の数だけ先のトークンに一致したトークンの規則の番号を返しますが、反復処理は進みません。
+     *
+     * @param k 先読みするトークンの位置
+     * @return 規則の番号。指定の位置のトークンが規則に一致しなかった場合は-1
+     * @throws IllegalArgumentException 位置が0より小さいか16より大きい場合
+     * @throws NoSuchElementException   指定の位置にトークンがない場合
+     * @throws UncheckedIOException     入出力エラーが発生した場合
+     * @see #peek(int)
+     */
+    public int peekRuleId(int k) {
+        if (peekToken(k) == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return k == 0 ? rule : aheadRule[(aheadHead + k - 1) & (LOOKAHEAD - 1)];
+    }
+
+    /**
+     * 次のトークンのキーワードの番号を返しますが、反復処理は進みません。
+     *
+     * @return キーワードの番号。次のトークンがキーワードではない場合は-1
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #keywordId()
+     */
+    public int peekKeywordId() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return keyword;
+    }
+
+    /**
+     * 指定の数だけ先のトークンのキーワードの番号を返しますが、反復処理は進みません。
+     *
+     * @param k 先読みするトークンの位置
+     * @return キーワードの番号。指定の位置のトークンがキーワードではない場合は-1
+     * @throws IllegalArgumentException 位置が0より小さいか16より大きい場合
+     * @throws NoSuchElementException   指定の位置にトークンがない場合
+     * @throws UncheckedIOException     入出力エラーが発生した場合
+     * @see #peek(int)
+     */
+    public int peekKeywordId(int k) {
+        if (peekToken(k) == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return k == 0 ? keyword : aheadKeyword[(aheadHead + k - 1) & (LOOKAHEAD - 1)];
+    }
+
+    /**
+     * 次のトークンの演算子の番号を返しますが、反復処理は進みません。
+     *
+     * @return 演算子の番号。次のトークンが演算子トークンではない場合は-1
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #operatorId()
+     */
+    public int peekOperatorId() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        return operator;
+    }
+
+    /**
+     * 次のトークンがlongの範囲の10進整数の場合にtrueを返します。
+     * 整数は省略可能な符号{@code '+'}または{@code '-'}と、1文字以上の{@code '0'}～{@code '9'}で構成されるトークンです。
+     *
+     * @return 次のトークンがlongの範囲の10進整数の場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @see LexerSpec.Builder#numberChars()
+     */
+    public boolean hasNextLong() {
+        return peekToken() != TT_EOF && parseLong();
+    }
+
+    /**
+     * 次のトークンを10進整数としてlongで返します。
+     * 整数はバッファ上で直接解析され、文字列は生成されません。
+     *
+     * @return 次のトークンの値
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが10進整数ではないか、longの範囲を超える場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #hasNextLong()
+     */
+    public long nextLong() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        if (!parseLong()) {
+            throw new InputMismatchException();
+        }
+        consume();
+        return longValue;
+    }
+
+    /**
+     * 次のトークンがintの範囲の10進整数の場合にtrueを返します。
+     *
+     * @return 次のトークンがintの範囲の10進整数の場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @see #hasNextLong()
+     */
+    public boolean hasNextInt() {
+        return hasNextLong() && (int) longValue == longValue;
+    }
+
+    /**
+     * 次のトークンを10進整数としてintで返します。
+     *
+     * @return 次のトークンの値
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが10進整数ではないか、intの範囲を超える場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #nextLong()
+     */
+    public int nextInt() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        if (!parseLong() || (int) longValue != longValue) {
+            throw new InputMismatchException();
+        }
+        consume();
+        return (int) longValue;
+    }
+
+    /**
+     * 次のトークンが有限のdoubleで表せる10進数の場合にtrueを返します。
+     * 10進数は省略可能な符号、小数点を含むことができる1文字以上の数字、
+     * 省略可能な{@code 'e'}または{@code 'E'}に続く符号付きの指数で構成されるトークンです。
+     *
+     * @return 次のトークンが有限のdoubleで表せる10進数の場合にtrue
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     * @see LexerSpec.Builder#numberChars()
+     */
+    public boolean hasNextDouble() {
+        return peekToken() != TT_EOF && parseDouble();
+    }
+
+    /**
+     * 次のトークンを10進数としてdoubleで返します。
+     * 仮数が15桁以下で指数が小さい数値は、文字列を生成せずにバッファ上で直接解析されます。
+     * それ以外の数値はjava.lang.Double#parseDouble(String)で解析され、どちらの場合も正しく丸めた値を返します。
+     *
+     * @return 次のトークンの値
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws InputMismatchException 次のトークンが10進数ではないか、doubleの範囲を超える場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     * @see #hasNextDouble()
+     */
+    public double nextDouble() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        if (!parseDouble()) {
+            throw new InputMismatchException();
+        }
+        consume();
+        return doubleValue;
+    }
+
+    /**
+     * 先読みしたトークンを10進整数として解析し、値を{@code longValue}に格納します。
+     * 負数として累積することで{@code Long.MIN_VALUE}も桁あふれせずに解析します。
+     *
+     * @return 解析できた場合にtrue
+     */
+    private boolean parseLong() {
+        int i = tokStart;
+        int end = tokEnd;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9 || result < multmin) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + d) {
+                return false;
+            }
+            result -= d;
+        }
+        longValue = negative ? result : -result;
+        return true;
+    }
+
+    /**
+     * 先読みしたトークンを10進数として解析し、値を{@code doubleValue}に格納します。
+     *
+     * @return 解析でき、値が有限の場合にtrue
+     */
+    private boolean parseDouble() {
+        int i = tokStart;
+        int end = tokEnd;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            char c = buf[i];
+            if (c == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9) {
+                break;
+            }
+            digits++;
+            if (significant > 0 || d > 0) {
+                significant++;
+                if (significant <= 18) {
+                    mantissa = mantissa * 10 + d;
+                }
+            }
+            if (point) {
+                scale--;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        int exponent = 0;
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                negativeExponent = buf[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return false;
+            }
+            for (; i < end; i++) {
+                int d = buf[i] - '0';
+                if (d < 0 || d > 9) {
+                    return false;
+                }
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + d;
+                }
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (i != end) {
+            return false;
+        }
+        double value;
+        int e = exponent + scale;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (significant <= 15 && mantissa <= MAX_EXACT_MANTISSA && -22 <= e && e <= 22) {
+            value = e >= 0 ? mantissa * POWERS_OF_TEN[e] : mantissa / POWERS_OF_TEN[-e];
+        } else {
+            // 符号は後で付けるため、絶対値を求めます。
+            value = Math.abs(Double.parseDouble(new String(buf, tokStart, tokEnd - tokStart)));
+        }
+        if (Double.isInfinite(value)) {
+            return false;
+        }
+        doubleValue = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * 現在のトークンの直前にスキップした空白の文字列を返します。
+     *
+     * @return スキップした空白の文字列。空白をスキップしていない場合、長さ0の文字列。
+     */
+    public String skippedWhitespace() {
+        if (ws == null) {
+            ws = new String(buf, curWsStart, curStart - curWsStart);
+        }
+        return ws;
+    }
+
+    /**
+     * 次のトークンに進みます。トークンの文字列は生成されません。
+     * 進んだ後のトークンは{@link #tokenView()}で参照できます。
+     *
+     * @throws NoSuchElementException トークンがこれ以上ない場合
+     * @throws UncheckedIOException   入出力エラーが発生した場合
+     */
+    public void advance() {
+        if (peekToken() == TT_EOF) {
+            throw new NoSuchElementException();
+        }
+        consume();
+    }
+
+    /**
+     * 次のトークンから最大でバッチの容量までのトークンに進み、その種類と位置をバッチに格納します。
+     * トークンの文字列は生成されません。
+     * 格納したトークンの文字は次にトークンを進めるまでLexerのバッファに保持され、{@link TokenBatch#text(int)}で参照できます。
+     * 進んだ後の現在のトークンはバッチの最後のトークンです。
+     *
+     * @param batch トークンを格納するバッチ
+     * @return 格納したトークンの数。トークンがこれ以上ない場合は0
+     * @throws NullPointerException 指定のバッチがnullの場合
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    public int nextBatch(TokenBatch batch) {
+        int[] kinds = batch.kinds;
+        long[] starts = batch.starts;
+        int[] lengths = batch.lengths;
+        int[] wsLengths = batch.whitespaceLengths;
+        int n = 0;
+        if (peekToken() != TT_EOF) {
+            int first = wsStart;
+            do {
+                if (ttype == TT_WORD) {
+                    kinds[n] = TokenBatch.WORD;
+                } else if (ttype == TT_OPERATOR) {
+                    kinds[n] = TokenBatch.OPERATOR;
+                } else if (ttype == TT_QUOTE) {
+                    kinds[n] = TokenBatch.QUOTED;
+                } else if (ttype == TT_COMMENT) {
+                    kinds[n] = TokenBatch.COMMENT;
+                } else if (table.classOf(ttype) == LINE_TERMINATOR) {
+                    kinds[n] = TokenBatch.LINE_TERMINATOR;
+                } else {
+                    kinds[n] = TokenBatch.CHAR;
+                }
+                starts[n] = base + tokStart;
+                lengths[n] = tokEnd - tokStart;
+                wsLengths[n] = tokStart - wsStart;
+                if (n > 0) {
+                    first = keep;
+                }
+                consume();
+                // バッチの先頭から後の文字をバッファに保持します。
+                keep = first;
+                n++;
+            } while (n < kinds.length && peekToken() != TT_EOF);
+        }
+        // バッファを詰めてもずれないようにbaseを加えて記録した位置を、オフセットに直します。
+        long[] positions = batch.positions;
+        for (int k = 0; k < n; k++) {
+            positions[k] = starts[k];
+            starts[k] = offsetOf((int) (starts[k] - base));
+        }
+        batch.set(n, this);
+        return n;
+    }
+
+    /**
+     * バッファを詰めても変わらない位置から、指定の長さの文字列を生成します。
+     * 先読みでバッファを詰めたり拡張したりしても、現在のバッファから生成します。
+     *
+     * @param position バッファ上の位置にbaseを加えた位置
+     * @param length   長さ
+     */
+    String text(long position, int length) {
+        return new String(buf, (int) (position - base), length);
+    }
+
+    /**
+     * 現在のトークンの先頭の、入力の先頭からのオフセットを返します。
+     * オフセットはcharの単位で数えます。
+     *
+     * @return 現在のトークンのオフセット。トークンを読み込んでいない場合は0
+     */
+    public long offset() {
+        return offsetOf(curStart);
+    }
+
+    /**
+     * 現在のトークンに一致したトークンの規則の番号を返します。
+     * トークンの範囲は{@link #offset()}と{@link #tokenView()}の長さで得られます。
+     *
+     * @return 規則の番号。規則に一致しなかったトークンの場合、またはトークンを読み込んでいない場合は-1
+     * @see LexerSpec.Builder#rules(TokenRules)
+     */
+    public int ruleId() {
+        return curRule;
+    }
+
+    /**
+     * 現在のトークンのキーワードの番号を返します。
+     * 分類はワードを走査したときに済んでいるため、文字列を生成せずに判定できます。
+     *
+     * @return キーワードの番号。キーワードではない場合、またはトークンを読み込んでいない場合は-1
+     * @see LexerSpec.Builder#keywords(KeywordTable)
+     */
+    public int keywordId() {
+        return curKeyword;
+    }
+
+    /**
+     * 現在のトークンの演算子の番号を返します。
+     *
+     * @return 演算子の番号。演算子トークンではない場合、またはトークンを読み込んでいない場合は-1
+     * @see LexerSpec.Builder#operators(OperatorTable)
+     */
+    public int operatorId() {
+        return curOperator;
+    }
+
+    /**
+     * 現在のトークンの行番号を返します。
+     * 行番号は1から始まり、行終端文字のトークンを読み込むたびに1つ増えます。
+     * 行終端文字のトークン自体は、それが終端する行に含まれます。
+     * CRとLFがともに行終端文字の場合、CRの直後のLFは1つの行終端として数えます。
+     *
+     * @return 現在のトークンの行番号。トークンを読み込んでいない場合は1
+     * @see #setPositionTracking(boolean)
+     */
+    public int lineNumber() {
+        return curLine;
+    }
+
+    /**
+     * 現在のトークンの列番号を返します。
+     * 列番号は1から始まり、行の先頭からのcharの数で数えます。
+     *
+     * @return 現在のトークンの列番号。トークンを読み込んでいない場合は1
+     * @see #setPositionTracking(boolean)
+     */
+    public long columnNumber() {
+        return offsetOf(curStart) - curLineStart + 1;
+    }
+
+    /**
+     * 現在のトークンを参照するビューを返します。
+     * ビューは文字列を生成せずにLexerのバッファを直接参照するため、次にトークンを進めるまでの間だけ有効です。
+     * 返されるオブジェクトは常に同じで、トークンを進めると内容が変わります。
+     *
+     * @return 現在のトークンのビュー。トークンを読み込んでいない場合、長さ0のビュー。
+     */
+    public CharSequence tokenView() {
+        return tokenView;
+    }
+
+    /**
+     * 現在のトークンの直前にスキップした空白を参照するビューを返します。
+     * ビューの有効期間は{@link #tokenView()}と同じです。
+     *
+     * @return スキップした空白のビュー。空白をスキップしていない場合、長さ0のビュー。
+     */
+    public CharSequence skippedWhitespaceView() {
+        return skippedView;
+    }
+
+    /**
+     * 現在のトークンに後続する空白を参照するビューを返します。
+     * ビューの有効期間は{@link #tokenView()}と同じです。
+     *
+     * @return 後続する空白のビュー。空白が後続しない場合、長さ0のビュー。
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    public CharSequence trailingWhitespaceView() {
+        return trailingView;
+    }
+
+    /**
+     * 現在のトークンに後続する空白の文字列を返します。
+     *
+     * @return 後続する空白の文字列。空白が後続しな場合、長さ0の文字列。
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    public String trailingWhitespace() {
+        peekToken();
+        return new String(buf, wsStart, tokStart - wsStart);
+    }
+
+    /**
+     * 残りのトークンを要素とする順序付けられたストリームを返します。
+     * 文字列、バイトバッファ、メモリーマップしたファイルを字句解析する場合と、文字ストリームの終わりまで読み込んだ場合、
+     * ストリームを並列に処理する際に残りの入力が空白文字または行終端文字の位置で分割されます。
+     * 分割した後半は同じ仕様の別のLexerで字句解析されるため、トークンの並びは逐次に処理した場合と同じです。
+     * トークンの規則、演算子の表、引用符またはコメントを設定している場合は、トークンが空白文字や行終端文字を含むことがあるため分割しません。
+     * ストリームを処理している間にこのLexerを直接操作した場合の結果は規定されません。
+     *
+     * @return 残りのトークンのストリーム
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    public Stream<String> tokens() {
+        return StreamSupport.stream(new TokenSpliterator(this), false);
+    }
+
+    /**
+     * 残りのトークンの数の上限の見積もりを返します。
+     */
+    private long estimateSize() {
+        long chars = limit - wsStart;
+        if (eof) {
+            return chars;
+        }
+        if (in instanceof ByteReader) {
+            long bytes = ((ByteReader) in).estimateSize();
+            return bytes == Long.MAX_VALUE ? bytes : chars + bytes;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 残りの入力を分割し、後半を字句解析する新しいLexerを返します。
+     * 分割はバッファ上の未走査の文字の中央以降、またはバイトバッファの未読のバイトの中央以降で最初の空白文字または行終端文字の位置で行います。
+     * 空白文字と行終端文字はワードの一部にならないため、分割の前後のトークンは逐次に字句解析した場合と同じです。
+     *
+     * @return 後半を字句解析するLexer。分割できない場合はnull
+     */
+    private Lexer trySplit() {
+        int from = aheadCount > 0 ? aheadEnd[(aheadHead + aheadCount - 1) & (LOOKAHEAD - 1)]
+                : peeked ? tokEnd : wsStart;
+        if (rules != null || operators != null || delimiters != null || maxToken < Integer.MAX_VALUE
+                || maxWhitespace < Integer.MAX_VALUE) {
+            return null;
+        }
+        if (eof) {
+            int at = splitPoint(from + (limit - from) / 2);
+            if (at <= from || at >= limit) {
+                return null;
+            }
+            Lexer lexer = new Lexer(buf, at, limit, spec());
+            limit = at;
+            return lexer;
+        }
+        if (in instanceof ByteReader) {
+            ByteReader r = ((ByteReader) in).trySplit(table);
+            if (r != null) {
+                return new Lexer(r, spec());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 指定の位置以降で最初の空白文字または行終端文字の位置を返します。
+     * サロゲートペアの間は分割しません。
+     */
+    private int splitPoint(int from) {
+        byte[][] pages = table.pages;
+        int i = from;
+        if (i > 0 && i < limit && Character.isLowSurrogate(buf[i]) && Character.isHighSurrogate(buf[i - 1])) {
+            i++;
+        }
+        while (i < limit) {
+            int c = Character.codePointAt(buf, i, limit);
+            int type = pages[c >>> 8][c & 0xff];
+            if (type == WHITESPACE || type == LINE_TERMINATOR) {
+                return i;
+            }
+            i += Character.charCount(c);
+        }
+        return limit;
+    }
+
+    /**
+     * Lexerの残りのトークンを走査するSpliteratorです。
+     */
+    private static final class TokenSpliterator implements Spliterator<String> {
+
+        private Lexer lexer;
+
+        TokenSpliterator(Lexer lexer) {
+            this.lexer = lexer;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            Objects.requireNonNull(action);
+            if (!lexer.hasNext()) {
+                return false;
+            }
+            action.accept(lexer.next());
+            return true;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            Lexer suffix = lexer.trySplit();
+            if (suffix == null) {
+                return null;
+            }
+            // 分割したSpliteratorが前半を受け持ち、このSpliteratorは後半を受け持ちます。
+            Spliterator<String> prefix = new TokenSpliterator(lexer);
+            lexer = suffix;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return lexer.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    /**
+     * トークンや空白が最大長を超えた場合の方針です。
+     *
+     * @author Junji Mikami
+     * @see Lexer#setMaxTokenLength(int, LengthPolicy)
+     * @see Lexer#setMaxWhitespaceLength(int, LengthPolicy)
+     */
+    public enum LengthPolicy {
+        /**
+         * 最大長を超えた時点でjava.util.InputMismatchExceptionをスローします。
+         * 同じトークンを読み込もうとするたびに同じ例外をスローします。
+         */
+        FAIL,
+        /**
+         * 最大長までの文字を返し、残りの文字は保持せずに読み飛ばします。
+         * 読み飛ばした文字はオフセットに数えますが、含まれる行終端文字は行番号に数えません。
+         */
+        TRUNCATE,
+        /**
+         * 最大長ごとに分割し、続くトークンとして順に返します。
+         * 分割した2つ目以降のトークンの直前にスキップした空白は長さ0です。
+         */
+        CHUNK
+    }
+
+    /**
+     * Lexerのバッファの一部を参照するCharSequenceです。
+     * end()は先読みによってバッファを詰めることがあるため、start()より先に呼び出します。
+     */
+    private abstract class View implements CharSequence {
+
+        abstract int start();
+
+        abstract int end();
+
+        @Override
+        public int length() {
+            int end = end();
+            return end - start();
+        }
+
+        @Override
+        public char charAt(int index) {
+            int end = end();
+            int start = start();
+            Objects.checkIndex(index, end - start);
+            return buf[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            int to = end();
+            int from = start();
+            Objects.checkFromToIndex(start, end, to - from);
+            return new String(buf, from + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            int end = end();
+            int start = start();
+            return new String(buf, start, end - start);
+        }
+    }
+
+    /**
+     * 文字設定を初期状態に戻します。
+     *
+     * @return このLexer
+     */
+    public Lexer reset() {
+        table = CharClassTable.DEFAULT;
+        tableShared = true;
+        return this;
+    }
+
+    /**
+     * 指定の文字を通常文字に戻します。
+     *
+     * @param ch 設定する文字
+     * @return このLexer
+     */
+    public Lexer reset(char... ch) {
+        return setChars(ORDINARY, ch);
+    }
+
+    /**
+     * 
+     * @param ch
+     * @return
+     */
+    public Lexer setWordChars(char... ch) {
+        return setChars(WORD, ch);
+    }
+
+    /**
+     * 指定の範囲の文字を通常文字に戻します。
+     *
+     * @param low 範囲の最初のコードポイント
+     * @param hi  範囲の最後のコードポイント
+     * @return このLexer
+     * @throws IllegalArgumentException 範囲が正しくない場合
+     */
+    public Lexer resetRange(int low, int hi) {
+        return setRange(ORDINARY, low, hi);
+    }
+
+    /**
+     * 
+     * @param low
+     * @param hi
+     * @return
+     */
+    public Lexer setWordCharRange(int low, int hi) {
+        return setRange(WORD, low, hi);
+    }
+
+    /**
+     * 指定のUnicodeブロックの文字をワード構成文字に設定します。
+     *
+     * @param block Unicodeブロック
+     * @return このLexer
+     * @throws NullPointerException 指定のUnicodeブロックがnullの場合
+     */
+    public Lexer setWordChars(Character.UnicodeBlock block) {
+        editableTable().set(block, WORD);
+        return this;
+    }
+
+    /**
+     * 指定のUnicodeスクリプトの文字をワード構成文字に設定します。
+     *
+     * @param script Unicodeスクリプト
+     * @return このLexer
+     * @throws NullPointerException 指定のUnicodeスクリプトがnullの場合
+     */
+    public Lexer setWordChars(Character.UnicodeScript script) {
+        editableTable().set(script, WORD);
+        return this;
+    }
+
+    /**
+     * 数値を構成する文字{@code '0'}～{@code '9'}、{@code '.'}、{@code '-'}をワード構成文字に設定します。
+     *
+     * @return このLexer
+     * @see LexerSpec.Builder#numberChars()
+     */
+    public Lexer setNumberChars() {
+        setRange(WORD, '0', '9');
+        return setChars(WORD, '.', '-');
+    }
+
+    /**
+     * 指定の文字を空白文字に設定します。
+     *
+     * @param ch 設定する文字
+     * @return このLexer
+     */
+    public Lexer setWhitespaceChars(char... ch) {
+        return setChars(WHITESPACE, ch);
+    }
+
+    /**
+     * 指定の範囲の文字を空白文字に設定します。
+     *
+     * @param low 範囲の最初のコードポイント
+     * @param hi  範囲の最後のコードポイント
+     * @return このLexer
+     * @throws IllegalArgumentException 範囲が正しくない場合
+     */
+    public Lexer setWhitespaceCharRange(int low, int hi) {
+        return setRange(WHITESPACE, low, hi);
+    }
+
+    /**
+     * 指定のUnicodeブロックの文字を空白文字に設定します。
+     *
+     * @param block Unicodeブロック
+     * @return このLexer
+     * @throws NullPointerException 指定のUnicodeブロックがnullの場合
+     */
+    public Lexer setWhitespaceChars(Character.UnicodeBlock block) {
+        editableTable().set(block, WHITESPACE);
+        return this;
+    }
+
+    /**
+     * 指定のUnicodeスクリプトの文字を空白文字に設定します。
+     *
+     * @param script Unicodeスクリプト
+     * @return このLexer
+     * @throws NullPointerException 指定のUnicodeスクリプトがnullの場合
+     */
+    public Lexer setWhitespaceChars(Character.UnicodeScript script) {
+        editableTable().set(script, WHITESPACE);
+        return this;
+    }
+
+    /**
+     * 
+     * @param ch
+     * @return
+     */
+    public Lexer setLineTerminatorChars(char... ch) {
+        return setChars(LINE_TERMINATOR, ch);
+    }
+
+    /**
+     * 指定の範囲の文字を行終端文字に設定します。
+     *
+     * @param low 範囲の最初のコードポイント
+     * @param hi  範囲の最後のコードポイント
+     * @return このLexer
+     * @throws IllegalArgumentException 範囲が正しくない場合
+     */
+    public Lexer setLineTerminatorCharRange(int low, int hi) {
+        return setRange(LINE_TERMINATOR, low, hi);
+    }
+
+    /**
+     * 行番号と列番号の追跡の有無を設定します。初期設定では追跡します。
+     * 追跡しない間に読み込んだ行終端文字は行番号に数えられず、
+     * {@link #lineNumber()}と{@link #columnNumber()}は追跡を止める前の行を基準にした値を返します。
+     * オフセットは設定に関わらず常に追跡されます。
+     *
+     * @param on 追跡する場合にtrue
+     * @return このLexer
+     */
+    public Lexer setPositionTracking(boolean on) {
+        tracking = on;
+        return this;
+    }
+
+    /**
+     * トークンの最大長と、最大長を超えた場合の方針を設定します。初期設定では制限しません。
+     * 最大長はcharの単位で数え、ワードトークン、規則に一致したトークン、引用トークン、コメントのトークンに適用します。
+     * 引用トークンとコメントのトークンは分割できないため、{@link LengthPolicy#CHUNK}の場合も切り詰めます。
+     * 規則に一致したトークンは最大長までの範囲で最長一致し、{@link LengthPolicy#TRUNCATE}の場合も続く文字は次のトークンとして走査します。
+     * 長さを制限している間は、{@link #tokens()}のストリームを並列に処理する際に分割しません。
+     *
+     * @param max    トークンの最大長
+     * @param policy 最大長を超えた場合の方針
+     * @return このLexer
+     * @throws IllegalArgumentException 最大長が1より小さい場合
+     * @throws NullPointerException     方針がnullの場合
+     */
+    public Lexer setMaxTokenLength(int max, LengthPolicy policy) {
+        if (max < 1) {
+            throw new IllegalArgumentException(String.valueOf(max));
+        }
+        tokenPolicy = Objects.requireNonNull(policy);
+        maxToken = max;
+        return this;
+    }
+
+    /**
+     * トークンの直前にスキップする空白の最大長と、最大長を超えた場合の方針を設定します。初期設定では制限しません。
+     * 最大長はcharの単位で数え、読み飛ばしたコメントと入力の末尾の空白も含みます。
+     * 空白は分割できないため、{@link LengthPolicy#CHUNK}は指定できません。
+     *
+     * @param max    空白の最大長
+     * @param policy 最大長を超えた場合の方針
+     * @return このLexer
+     * @throws IllegalArgumentException 最大長が1より小さい場合、または方針がCHUNKの場合
+     * @throws NullPointerException     方針がnullの場合
+     */
+    public Lexer setMaxWhitespaceLength(int max, LengthPolicy policy) {
+        if (max < 1 || Objects.requireNonNull(policy) == LengthPolicy.CHUNK) {
+            throw new IllegalArgumentException(max + ", " + policy);
+        }
+        whitespacePolicy = policy;
+        maxWhitespace = max;
+        return this;
+    }
+
+    /**
+     * ワードトークンの文字列を再利用するキャッシュを設定します。
+     * キャッシュにあるワードは、バッファから文字列を生成せずにキャッシュの文字列を返します。
+     * 初期設定ではキャッシュを使用しません。
+     *
+     * @param cache キャッシュ。使用しない場合はnull
+     * @return このLexer
+     */
+    public Lexer setWordCache(WordCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * トークンの規則を設定します。
+     * 設定は次に走査するトークンから反映され、先読み済みのトークンには反映されません。
+     *
+     * @param rules トークンの規則。使用しない場合はnull
+     * @return このLexer
+     * @see LexerSpec.Builder#rules(TokenRules)
+     */
+    public Lexer setTokenRules(TokenRules rules) {
+        this.rules = rules;
+        return this;
+    }
+
+    /**
+     * キーワードの表を設定します。
+     * 設定は次に走査するトークンから反映され、先読み済みのトークンには反映されません。
+     *
+     * @param keywords キーワードの表。使用しない場合はnull
+     * @return このLexer
+     * @see LexerSpec.Builder#keywords(KeywordTable)
+     */
+    public Lexer setKeywords(KeywordTable keywords) {
+        this.keywords = keywords;
+        return this;
+    }
+
+    /**
+     * 演算子の表を設定します。
+     * 設定は次に走査するトークンから反映され、先読み済みのトークンには反映されません。
+     *
+     * @param operators 演算子の表。使用しない場合はnull
+     * @return このLexer
+     * @see LexerSpec.Builder#operators(OperatorTable)
+     */
+    public Lexer setOperators(OperatorTable operators) {
+        this.operators = operators;
+        return this;
+    }
+
+    private CharClassTable editableTable() {
+        if (tableShared) {
+            table = table.copy();
+            tableShared = false;
+        }
+        return table;
+    }
+
+    private Lexer setChars(byte type, char... ch) {
+        CharClassTable t = editableTable();
+        for (char c : ch) {
+            t.set(c, type);
+        }
+        return this;
+    }
+
+    private Lexer setRange(byte type, int low, int hi) {
+        CharClassTable.checkRange(low, hi);
+        editableTable().set(low, hi, type);
+        return this;
+    }
+
+    /**
+     * 現在の文字設定、トークンの規則、キーワードと演算子の表を仕様として返します。
+     * 返された仕様は、その後このLexerの文字設定を変更しても影響を受けません。
+     *
+     * @return 現在の文字設定の仕様
+     */
+    public LexerSpec spec() {
+        tableShared = true;
+        return new LexerSpec(table, rules, keywords, operators, delimiters, modes);
+    }
+
+    /**
+     * 現在のトークンの直後を中断点として返します。
+     * 中断点は、オフセット、行番号と列番号の状態、切り替えているモードと、モードのスタックの各段の設定のハッシュ値を記録します。
+     * 先読み済みのトークンと現在のトークンの後の空白は記録せず、再開したLexerが入力から改めて読み込みます。
+     * 入力がバイトストリーム、バイトバッファ、またはファイルで、文字セットがUS-ASCII、ISO-8859-1、UTF-8、Shift_JISの場合は、
+     * 中断点のバイトオフセットも記録します。
+     * バッファに残っている文字を符号化し直して求めるため、置換した置換文字が残っている場合と、
+     * デコードできないバイト列を無視している場合は記録しません。
+     *
+     * @return 中断点
+     * @see #open(Path, Charset, LexerSpec, Checkpoint)
+     */
+    public Checkpoint checkpoint() {
+        String[] names = new String[modeDepth];
+        for (int i = 1; i < modeDepth; i++) {
+            names[i - 1] = modeNameStack[i];
+        }
+        if (modeDepth > 0) {
+            names[modeDepth - 1] = mode;
+        }
+        int[] fingerprints = new int[modeDepth + 1];
+        for (int i = 0; i < modeDepth; i++) {
+            fingerprints[i] = modeStack[i].fingerprint();
+        }
+        fingerprints[modeDepth] = currentSpec().fingerprint();
+        long bytes = -1;
+        Charset cs = null;
+        if (in instanceof ByteReader) {
+            ByteReader r = (ByteReader) in;
+            cs = r.charset();
+            // 切り詰めて取り除いた文字のバイト数はわかりません。
+            if (gaps == 0 || gapAt[gaps - 1] <= curEnd) {
+                long n = r.encodedLength(buf, curEnd, limit);
+                bytes = n < 0 ? -1 : r.position() - n;
+            }
+        }
+        return new Checkpoint(offsetOf(curEnd), bytes, cs == null ? null : cs.name(), line, lineStart,
+                prevLineStart, crEnd, names, fingerprints);
+    }
+
+    /**
+     * 指定の名前のモードに切り替え、それまでのモードをスタックに積みます。
+     * モードの仕様の文字設定、トークンの規則、キーワードと演算子の表、引用符とコメントの設定への参照を差し替えるだけで、
+     * 文字設定の複製や再構築は行いません。
+     * 先読み済みのトークンは破棄され、切り替えたモードで改めて走査されます。
+     * 現在のトークンとオフセット、行番号は変わりません。
+     *
+     * @param name モードの名前
+     * @return このLexer
+     * @throws IllegalArgumentException 指定の名前のモードがない場合
+     * @see LexerSpec.Builder#mode(String, LexerSpec)
+     */
+    public Lexer pushMode(String name) {
+        LexerSpec spec = modes.get(name);
+        if (spec == null) {
+            throw new IllegalArgumentException(name);
+        }
+        if (modeDepth == modeStack.length) {
+            int n = Math.max(4, modeDepth * 2);
+            modeStack = Arrays.copyOf(modeStack, n);
+            modeNameStack = Arrays.copyOf(modeNameStack, n);
+        }
+        modeStack[modeDepth] = currentSpec();
+        modeNameStack[modeDepth] = mode;
+        modeDepth++;
+        mode = name;
+        apply(spec);
+        rewind();
+        return this;
+    }
+
+    /**
+     * 現在のモードを終了し、{@link #pushMode(String)}で積んだ直前のモードに戻ります。
+     * 戻ったモードの設定は、切り替えた時点の設定です。
+     * 先読み済みのトークンは破棄され、戻ったモードで改めて走査されます。
+     *
+     * @return このLexer
+     * @throws IllegalStateException スタックにモードがない場合
+     */
+    public Lexer popMode() {
+        if (modeDepth == 0) {
+            throw new IllegalStateException();
+        }
+        modeDepth--;
+        LexerSpec spec = modeStack[modeDepth];
+        mode = modeNameStack[modeDepth];
+        modeStack[modeDepth] = null;
+        modeNameStack[modeDepth] = null;
+        apply(spec);
+        rewind();
+        return this;
+    }
+
+    /**
+     * 現在のモードの名前を返します。
+     *
+     * @return 現在のモードの名前。最初のモードの場合はnull
+     */
+    public String mode() {
+        return mode;
+    }
+
+    /**
+     * 現在の設定の仕様を返します。最後に適用した仕様から設定を変更していなければ、その仕様をそのまま返します。
+     */
+    private LexerSpec currentSpec() {
+        LexerSpec spec = modeSpec;
+        if (tableShared && spec.table == table && spec.rules == rules && spec.keywords == keywords
+                && spec.operators == operators && spec.delimiters == delimiters) {
+            return spec;
+        }
+        return spec();
+    }
+
+    private void apply(LexerSpec spec) {
+        modeSpec = spec;
+        table = spec.table;
+        tableShared = true;
+        rules = spec.rules;
+        keywords = spec.keywords;
+        operators = spec.operators;
+        delimiters = spec.delimiters;
+    }
+
+    /**
+     * 先読み済みのトークンを破棄し、現在のトークンの直後から走査し直す状態に戻します。
+     */
+    private void rewind() {
+        if (peeked) {
+            peeked = false;
+            token = null;
+        }
+        if (aheadCount > 0) {
+            Arrays.fill(aheadToken, null);
+            aheadHead = 0;
+            aheadCount = 0;
+        }
+    }
+
+    /**
+     * 字句解析する文字ストリームを指定の文字ストリームに置き換え、最初から字句解析する状態に戻します。
+     * {@link #pushMode(String)}で切り替えたモードは、最初のモードに戻ります。
+     * バッファ、文字設定、キャッシュ、位置の追跡の設定はそのまま再利用されるため、
+     * メッセージごとに新しいLexerを構築する代わりに使用すると、定常状態では割り当てが発生しません。
+     * 置き換える前の文字ストリームは閉じられません。
+     * 文字列から構築したLexerの場合、最初の置き換えでだけバッファを割り当てます。
+     *
+     * @param r 新しい文字ストリーム
+     * @return このLexer
+     * @throws NullPointerException 指定の文字ストリームがnullの場合
+     */
+    public Lexer rebind(Reader r) {
+        in = Objects.requireNonNull(r);
+        if (modeDepth > 0) {
+            apply(modeStack[0]);
+            mode = null;
+            Arrays.fill(modeStack, null);
+            Arrays.fill(modeNameStack, null);
+            modeDepth = 0;
+        }
+        if (bufShared) {
+            buf = new char[BUFFER_SIZE];
+            bufShared = false;
+        }
+        pos = 0;
+        limit = 0;
+        eof = false;
+        peeked = false;
+        ttype = TT_EOF;
+        wsStart = 0;
+        tokStart = 0;
+        tokEnd = 0;
+        rule = -1;
+        keyword = -1;
+        operator = -1;
+        token = null;
+        if (aheadToken != null) {
+            Arrays.fill(aheadToken, null);
+        }
+        aheadHead = 0;
+        aheadCount = 0;
+        keep = 0;
+        curWsStart = 0;
+        curStart = 0;
+        curEnd = 0;
+        curRule = -1;
+        curKeyword = -1;
+        curOperator = -1;
+        ws = "";
+        base = 0;
+        capFrom = -1;
+        gaps = 0;
+        dropped = 0;
+        line = 1;
+        lineStart = 0;
+        prevLineStart = 0;
+        crEnd = -1;
+        curLine = 1;
+        curLineStart = 0;
+        return this;
+    }
+
+    /**
+     * 文字ストリームを閉じます。
+     *
+     * @throws UncheckedIOException 入出力エラーが発生した場合
+     */
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * 現在のトークンに関する文字列表現を返します。
      *
      * @return 現在のトークンに関する文字列表現
      */
@@ -441,16 +2925,27 @@ public final class Lexer implements Iterator<String>, Closeable {
         if (hasNextInLine()) {
             if (hasNextChar()) {
                 sb.append("CHAR'");
-                sb.append(peekChar());
+                sb.append(peek());
                 sb.append("'");
             } else if (hasNextWord()) {
                 sb.append("WORD\"");
                 sb.append(peekWord());
                 sb.append("\"");
+            } else if (hasNextOperator()) {
+                sb.append("OPERATOR\"");
+                sb.append(peek());
+                sb.append("\"");
+            } else if (hasNextQuoted()) {
+                sb.append("QUOTED");
+                sb.append(peek());
+            } else if (hasNextComment()) {
+                sb.append("COMMENT\"");
+                sb.append(peek());
+                sb.append("\"");
             }
         } else if (hasNext()) {
             sb.append("EOL[");
-            sb.append(peekChar());
+            sb.append(peek());
             sb.append("]");
         } else {
             sb.append("EOF");
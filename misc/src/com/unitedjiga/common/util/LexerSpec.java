@@ -0,0 +1,529 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import static com.unitedjiga.common.util.CharClassTable.LINE_TERMINATOR;
+import static com.unitedjiga.common.util.CharClassTable.ORDINARY;
+import static com.unitedjiga.common.util.CharClassTable.WHITESPACE;
+import static com.unitedjiga.common.util.CharClassTable.WORD;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lexerの文字設定をまとめた不変の仕様です。
+ * 仕様はビルダーで一度だけ構築し、複数のLexerで共有します。
+ * Lexerは構築時に文字設定を複製しないため、多数のLexerを生成する場合に設定の手間がかかりません。
+ * このクラスのインスタンスはスレッドセーフです。
+ *
+ * <pre>
+ * {@code
+ * static final LexerSpec SPEC = LexerSpec.builder()
+ *         .whitespaceChars(' ', '\t')
+ *         .lineTerminatorChars('\n')
+ *         .wordCharRange('a', 'z')
+ *         .build();
+ * ...
+ * try (Lexer lexer = new Lexer(reader, SPEC)) {
+ *     ...
+ * }
+ * }
+ * </pre>
+ *
+ * @author Junji Mikami
+ * @see Lexer#Lexer(Reader, LexerSpec)
+ */
+public final class LexerSpec {
+
+    /**
+     * 文字設定が初期状態の仕様です。
+     */
+    public static final LexerSpec DEFAULT = new LexerSpec(CharClassTable.DEFAULT, null, null, null, null,
+            Collections.emptyMap());
+
+    final CharClassTable table;
+    final TokenRules rules;
+    final KeywordTable keywords;
+    final OperatorTable operators;
+    final Delimiters delimiters;
+    final Map<String, LexerSpec> modes;
+    /** 遅延して求めるfingerprint()の値。0は未計算を表します。 */
+    private int fingerprint;
+
+    LexerSpec(CharClassTable table, TokenRules rules, KeywordTable keywords, OperatorTable operators,
+            Delimiters delimiters, Map<String, LexerSpec> modes) {
+        this.table = table;
+        this.rules = rules;
+        this.keywords = keywords;
+        this.operators = operators;
+        this.delimiters = delimiters;
+        this.modes = modes;
+    }
+
+    /**
+     * 文字設定、トークンの規則、キーワードと演算子の表、引用符とコメントの設定から求めた、
+     * プロセスに依存しないハッシュ値を返します。モードは含みません。
+     * 中断点から再開する際に、同じ設定で字句解析しているかを確かめるために使用します。
+     */
+    int fingerprint() {
+        int h = fingerprint;
+        if (h == 0) {
+            h = table.fingerprint();
+            h = 31 * h + (rules == null ? 0 : rules.fingerprint());
+            h = 31 * h + (keywords == null ? 0 : keywords.fingerprint());
+            h = 31 * h + (operators == null ? 0 : operators.fingerprint());
+            h = 31 * h + (delimiters == null ? 0 : delimiters.fingerprint());
+            fingerprint = h;
+        }
+        return h;
+    }
+
+    /**
+     * 文字設定が初期状態のビルダーを返します。
+     *
+     * @return 新しいビルダー
+     */
+    public static Builder builder() {
+        return new Builder(LexerSpec.DEFAULT);
+    }
+
+    /**
+     * この仕様の文字設定から始まるビルダーを返します。
+     *
+     * @return 新しいビルダー
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * この仕様のトークンの規則を返します。
+     *
+     * @return トークンの規則。規則を使用しない場合はnull
+     */
+    public TokenRules rules() {
+        return rules;
+    }
+
+    /**
+     * この仕様のキーワードの表を返します。
+     *
+     * @return キーワードの表。キーワードを分類しない場合はnull
+     */
+    public KeywordTable keywords() {
+        return keywords;
+    }
+
+    /**
+     * この仕様の演算子の表を返します。
+     *
+     * @return 演算子の表。演算子を切り出さない場合はnull
+     */
+    public OperatorTable operators() {
+        return operators;
+    }
+
+    /**
+     * この仕様の名前付きのモードを返します。
+     *
+     * @return モードの名前と仕様の変更できないマップ
+     * @see Lexer#pushMode(String)
+     */
+    public Map<String, LexerSpec> modes() {
+        return modes;
+    }
+
+    /**
+     * LexerSpecのビルダーです。
+     * 後から設定した文字種別が優先されます。
+     *
+     * @author Junji Mikami
+     */
+    public static final class Builder {
+
+        private CharClassTable table;
+        private TokenRules rules;
+        private KeywordTable keywords;
+        private OperatorTable operators;
+        private char[] quotes = {};
+        private char escape = '\\';
+        private char[] lineComment;
+        private char[] blockOpen;
+        private char[] blockClose;
+        private boolean reportComments;
+        private Map<String, LexerSpec> modes;
+
+        private Builder(LexerSpec spec) {
+            table = spec.table.copy();
+            rules = spec.rules;
+            keywords = spec.keywords;
+            operators = spec.operators;
+            modes = new LinkedHashMap<>(spec.modes);
+            Delimiters d = spec.delimiters;
+            if (d != null) {
+                quotes = d.quotes;
+                escape = d.escape;
+                lineComment = d.lineComment;
+                blockOpen = d.blockOpen;
+                blockClose = d.blockClose;
+                reportComments = d.reportComments;
+            }
+        }
+
+        /**
+         * 指定の文字を通常文字に戻します。
+         *
+         * @param ch 設定する文字
+         * @return このビルダー
+         */
+        public Builder ordinaryChars(char... ch) {
+            return set(ORDINARY, ch);
+        }
+
+        /**
+         * 指定の範囲の文字を通常文字に戻します。
+         *
+         * @param low 範囲の最初のコードポイント
+         * @param hi  範囲の最後のコードポイント
+         * @return このビルダー
+         * @throws IllegalArgumentException 範囲が正しくない場合
+         */
+        public Builder ordinaryCharRange(int low, int hi) {
+            return set(ORDINARY, low, hi);
+        }
+
+        /**
+         * 指定の文字をワード構成文字に設定します。
+         *
+         * @param ch 設定する文字
+         * @return このビルダー
+         */
+        public Builder wordChars(char... ch) {
+            return set(WORD, ch);
+        }
+
+        /**
+         * 数値を構成する文字{@code '0'}～{@code '9'}、{@code '.'}、{@code '-'}をワード構成文字に設定します。
+         * 数値はワードトークンとして分割され、{@link Lexer#nextLong()}や{@link Lexer#nextDouble()}で読み込めます。
+         * 指数表記の{@code 'e'}や{@code '+'}を含む数値を読み込むには、それらもワード構成文字に設定します。
+         *
+         * @return このビルダー
+         */
+        public Builder numberChars() {
+            return set(WORD, '0', '9').set(WORD, new char[] { '.', '-' });
+        }
+
+        /**
+         * 指定の範囲の文字をワード構成文字に設定します。
+         *
+         * @param low 範囲の最初のコードポイント
+         * @param hi  範囲の最後のコードポイント
+         * @return このビルダー
+         * @throws IllegalArgumentException 範囲が正しくない場合
+         */
+        public Builder wordCharRange(int low, int hi) {
+            return set(WORD, low, hi);
+        }
+
+        /**
+         * 指定のUnicodeブロックの文字をワード構成文字に設定します。
+         *
+         * @param block Unicodeブロック
+         * @return このビルダー
+         * @throws NullPointerException 指定のUnicodeブロックがnullの場合
+         */
+        public Builder wordChars(Character.UnicodeBlock block) {
+            table.set(block, WORD);
+            return this;
+        }
+
+        /**
+         * 指定のUnicodeスクリプトの文字をワード構成文字に設定します。
+         *
+         * @param script Unicodeスクリプト
+         * @return このビルダー
+         * @throws NullPointerException 指定のUnicodeスクリプトがnullの場合
+         */
+        public Builder wordChars(Character.UnicodeScript script) {
+            table.set(script, WORD);
+            return this;
+        }
+
+        /**
+         * 指定の文字を空白文字に設定します。
+         *
+         * @param ch 設定する文字
+         * @return このビルダー
+         */
+        public Builder whitespaceChars(char... ch) {
+            return set(WHITESPACE, ch);
+        }
+
+        /**
+         * 指定の範囲の文字を空白文字に設定します。
+         *
+         * @param low 範囲の最初のコードポイント
+         * @param hi  範囲の最後のコードポイント
+         * @return このビルダー
+         * @throws IllegalArgumentException 範囲が正しくない場合
+         */
+        public Builder whitespaceCharRange(int low, int hi) {
+            return set(WHITESPACE, low, hi);
+        }
+
+        /**
+         * 指定のUnicodeブロックの文字を空白文字に設定します。
+         *
+         * @param block Unicodeブロック
+         * @return このビルダー
+         * @throws NullPointerException 指定のUnicodeブロックがnullの場合
+         */
+        public Builder whitespaceChars(Character.UnicodeBlock block) {
+            table.set(block, WHITESPACE);
+            return this;
+        }
+
+        /**
+         * 指定のUnicodeスクリプトの文字を空白文字に設定します。
+         *
+         * @param script Unicodeスクリプト
+         * @return このビルダー
+         * @throws NullPointerException 指定のUnicodeスクリプトがnullの場合
+         */
+        public Builder whitespaceChars(Character.UnicodeScript script) {
+            table.set(script, WHITESPACE);
+            return this;
+        }
+
+        /**
+         * 指定の文字を行終端文字に設定します。
+         *
+         * @param ch 設定する文字
+         * @return このビルダー
+         */
+        public Builder lineTerminatorChars(char... ch) {
+            return set(LINE_TERMINATOR, ch);
+        }
+
+        /**
+         * 指定の範囲の文字を行終端文字に設定します。
+         *
+         * @param low 範囲の最初のコードポイント
+         * @param hi  範囲の最後のコードポイント
+         * @return このビルダー
+         * @throws IllegalArgumentException 範囲が正しくない場合
+         */
+        public Builder lineTerminatorCharRange(int low, int hi) {
+            return set(LINE_TERMINATOR, low, hi);
+        }
+
+        /**
+         * トークンの規則を設定します。
+         * 規則を設定したLexerは、空白文字を読み飛ばした位置で規則に最長一致するトークンを切り出し、
+         * 一致した規則の番号とともにワードトークンとして返します。
+         * いずれの規則にも一致しない位置では、文字種別に従ってトークンを切り出します。
+         * 規則を設定した仕様はPushLexerでは使用できません。
+         *
+         * @param rules トークンの規則。規則を使用しない場合はnull
+         * @return このビルダー
+         * @see Lexer#ruleId()
+         */
+        public Builder rules(TokenRules rules) {
+            this.rules = rules;
+            return this;
+        }
+
+        /**
+         * キーワードの表を設定します。
+         * 表を設定したLexerは、ワードトークンを走査したときにキーワードに分類します。
+         * キーワードのトークンの文字列には表のキーワードが使用され、新しい文字列は生成されません。
+         * PushLexerはキーワードを分類しません。
+         *
+         * @param keywords キーワードの表。キーワードを分類しない場合はnull
+         * @return このビルダー
+         * @see Lexer#keywordId()
+         */
+        public Builder keywords(KeywordTable keywords) {
+            this.keywords = keywords;
+            return this;
+        }
+
+        /**
+         * 演算子の表を設定します。
+         * 表を設定したLexerは、通常文字で始まる位置で最も長く一致する演算子を1つの演算子トークンとして切り出します。
+         * 演算子に一致しない通常文字は、これまでどおり文字トークンになります。
+         * トークンの規則も設定した場合は、規則に一致しなかった位置でだけ演算子を照合します。
+         * 表を設定した仕様はPushLexerでは使用できません。
+         *
+         * @param operators 演算子の表。演算子を切り出さない場合はnull
+         * @return このビルダー
+         * @see Lexer#nextOperator()
+         */
+        public Builder operators(OperatorTable operators) {
+            this.operators = operators;
+            return this;
+        }
+
+        /**
+         * 指定の文字を引用符に設定します。
+         * トークンの先頭の引用符から、同じ引用符、行終端文字、入力の終わりのいずれかまでが1つの引用トークンになります。
+         * エスケープ文字の直後の引用符は文字列を閉じません。
+         * 閉じる引用符はバッファ上で一括して検索します。
+         * 引用符を設定した仕様はPushLexerでは使用できません。
+         *
+         * @param ch 設定する文字
+         * @return このビルダー
+         * @see Lexer#nextQuoted()
+         */
+        public Builder quoteChars(char... ch) {
+            char[] q = Arrays.copyOf(quotes, quotes.length + ch.length);
+            System.arraycopy(ch, 0, q, quotes.length, ch.length);
+            quotes = q;
+            return this;
+        }
+
+        /**
+         * 引用符で囲まれた文字列のエスケープ文字を設定します。初期設定は{@code '\'}です。
+         *
+         * @param ch エスケープ文字
+         * @return このビルダー
+         */
+        public Builder escapeChar(char ch) {
+            escape = ch;
+            return this;
+        }
+
+        /**
+         * 行コメントの開始を設定します。
+         * 空白を読み飛ばした位置で開始に一致すると、行終端文字の直前までがコメントになります。
+         * コメントは引用符、トークンの規則、演算子より先に照合されます。
+         * コメントを設定した仕様はPushLexerでは使用できません。
+         *
+         * @param start 行コメントの開始。行コメントを使用しない場合はnull
+         * @return このビルダー
+         * @throws IllegalArgumentException 開始が空文字列の場合
+         * @see #reportComments(boolean)
+         */
+        public Builder lineComment(String start) {
+            lineComment = toChars(start);
+            return this;
+        }
+
+        /**
+         * ブロックコメントの開始と終了を設定します。
+         * 空白を読み飛ばした位置で開始に一致すると、その後の最初の終了までがコメントになります。
+         * ブロックコメントは行終端文字を含むことができ、終了がない場合は入力の終わりまでがコメントになります。
+         * コメントを設定した仕様はPushLexerでは使用できません。
+         *
+         * @param start ブロックコメントの開始。ブロックコメントを使用しない場合はnull
+         * @param end   ブロックコメントの終了
+         * @return このビルダー
+         * @throws IllegalArgumentException 開始または終了が空文字列の場合
+         * @throws NullPointerException     開始がnullではなく、終了がnullの場合
+         * @see #reportComments(boolean)
+         */
+        public Builder blockComment(String start, String end) {
+            blockOpen = toChars(start);
+            blockClose = start == null ? null : toChars(Objects.requireNonNull(end));
+            return this;
+        }
+
+        /**
+         * コメントをトークンとして返すかを設定します。
+         * 初期設定では返さず、コメントは空白とともに読み飛ばされて{@link Lexer#skippedWhitespace()}に含まれます。
+         *
+         * @param report コメントをトークンとして返す場合にtrue
+         * @return このビルダー
+         * @see Lexer#hasNextComment()
+         */
+        public Builder reportComments(boolean report) {
+            reportComments = report;
+            return this;
+        }
+
+        /**
+         * 名前付きのモードを追加します。
+         * Lexerは{@link Lexer#pushMode(String)}でモードに切り替えると、モードの仕様の文字設定、トークンの規則、
+         * キーワードと演算子の表、引用符とコメントの設定で字句解析します。
+         * モードの仕様は構築済みのため、切り替えは参照の差し替えだけで済みます。
+         * モードの仕様が持つモードは使用されず、切り替え先は常にこのビルダーで追加したモードから選ばれます。
+         *
+         * @param name モードの名前
+         * @param spec モードの仕様
+         * @return このビルダー
+         * @throws NullPointerException 名前または仕様がnullの場合
+         */
+        public Builder mode(String name, LexerSpec spec) {
+            modes.put(Objects.requireNonNull(name), Objects.requireNonNull(spec));
+            return this;
+        }
+
+        /**
+         * 設定した文字種別から仕様を構築します。
+         * 構築後もビルダーは引き続き使用でき、構築済みの仕様には影響しません。
+         *
+         * @return 新しい仕様
+         */
+        public LexerSpec build() {
+            LexerSpec spec = new LexerSpec(table, rules, keywords, operators, delimiters(),
+                    Collections.unmodifiableMap(new LinkedHashMap<>(modes)));
+            table = table.copy();
+            return spec;
+        }
+
+        private Delimiters delimiters() {
+            if (quotes.length == 0 && lineComment == null && blockOpen == null) {
+                return null;
+            }
+            return new Delimiters(quotes, escape, lineComment, blockOpen, blockClose, reportComments);
+        }
+
+        private static char[] toChars(String s) {
+            if (s == null) {
+                return null;
+            }
+            if (s.isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            return s.toCharArray();
+        }
+
+        private Builder set(byte type, char... ch) {
+            for (char c : ch) {
+                table.set(c, type);
+            }
+            return this;
+        }
+
+        private Builder set(byte type, int low, int hi) {
+            CharClassTable.checkRange(low, hi);
+            table.set(low, hi, type);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lexerが複数の文字からなる演算子を1つのトークンとして切り出すための不変の表です。
+ * 演算子は文字のトライに格納され、Lexerは通常文字で始まる位置からトライをたどって最も長く一致する演算子を選びます。
+ * 例えば{@code "<"}、{@code "<="}、{@code "<<="}を設定した場合、{@code "<<=="}は{@code "<<="}と{@code "="}に分かれます。
+ * 演算子の番号は指定した順に0から数えます。
+ * このクラスのインスタンスは不変で、スレッドセーフです。
+ *
+ * <pre>
+ * {@code
+ * static final OperatorTable OPERATORS = OperatorTable.of("==", "!=", "<=", ">=", "->", "::", "+", "-");
+ * }
+ * </pre>
+ *
+ * @author Junji Mikami
+ * @see LexerSpec.Builder#operators(OperatorTable)
+ * @see Lexer#nextOperator()
+ */
+public final class OperatorTable {
+
+    private final String[] operators;
+    /** ASCII文字で始まる演算子の、ルートの子のノード。子がない場合は-1です。 */
+    private final int[] rootChild = new int[0x80];
+    /** ノードごとの、親からの遷移の文字。 */
+    private final char[] labels;
+    /** ノードごとの、最初の子のノード。子は文字の順に連続して並びます。 */
+    private final int[] firstChild;
+    /** ノードごとの子の数。 */
+    private final int[] childCount;
+    /** ノードごとの、そのノードで終わる演算子の番号。終わる演算子がない場合は-1です。 */
+    private final int[] terminal;
+
+    private OperatorTable(String[] operators) {
+        this.operators = operators;
+        // 木を構築してから、幅優先の順に番号を振って配列に詰めます。
+        Trie root = new Trie();
+        for (int id = 0; id < operators.length; id++) {
+            Trie t = root;
+            for (char c : operators[id].toCharArray()) {
+                t = t.children.computeIfAbsent(c, k -> new Trie());
+            }
+            t.id = id;
+        }
+        int n = root.count();
+        labels = new char[n];
+        firstChild = new int[n];
+        childCount = new int[n];
+        terminal = new int[n];
+        ArrayDeque<Trie> queue = new ArrayDeque<>();
+        queue.add(root);
+        int next = 1;
+        for (int node = 0; node < n; node++) {
+            Trie t = queue.remove();
+            terminal[node] = t.id;
+            firstChild[node] = next;
+            childCount[node] = t.children.size();
+            for (Map.Entry<Character, Trie> e : t.children.entrySet()) {
+                labels[next++] = e.getKey();
+                queue.add(e.getValue());
+            }
+        }
+        Arrays.fill(rootChild, -1);
+        for (int k = 0; k < childCount[0]; k++) {
+            int child = firstChild[0] + k;
+            if (labels[child] < rootChild.length) {
+                rootChild[labels[child]] = child;
+            }
+        }
+    }
+
+    /**
+     * 指定の演算子の表を返します。
+     *
+     * @param operators 演算子
+     * @return 新しい表
+     * @throws NullPointerException     演算子にnullが含まれる場合
+     * @throws IllegalArgumentException 演算子が重複しているか、空文字列が含まれる場合
+     */
+    public static OperatorTable of(String... operators) {
+        String[] copy = operators.clone();
+        Set<String> set = new HashSet<>();
+        for (String op : copy) {
+            if (op.isEmpty() || !set.add(op)) {
+                throw new IllegalArgumentException(op);
+            }
+        }
+        return new OperatorTable(copy);
+    }
+
+    /**
+     * 演算子の数を返します。
+     *
+     * @return 演算子の数
+     */
+    public int size() {
+        return operators.length;
+    }
+
+    /**
+     * 指定の番号の演算子を返します。
+     *
+     * @param id 演算子の番号
+     * @return 演算子
+     * @throws IndexOutOfBoundsException 番号が範囲外の場合
+     */
+    public String operator(int id) {
+        return operators[id];
+    }
+
+    /**
+     * 指定の文字列の演算子の番号を返します。
+     *
+     * @param s 文字列
+     * @return 演算子の番号。演算子ではない場合は-1
+     */
+    public int operatorId(CharSequence s) {
+        int node = 0;
+        for (int i = 0; i < s.length() && node >= 0; i++) {
+            node = step(node, s.charAt(i));
+        }
+        return node > 0 ? terminal[node] : -1;
+    }
+
+    /**
+     * 指定のノードから指定の文字で遷移した子のノードを返します。ルートは0です。
+     *
+     * @return 子のノード。子がない場合は-1
+     */
+    int step(int node, char c) {
+        if (node == 0 && c < rootChild.length) {
+            return rootChild[c];
+        }
+        int first = firstChild[node];
+        int end = first + childCount[node];
+        for (int i = first; i < end; i++) {
+            if (labels[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 指定のノードで終わる演算子の番号を返します。
+     *
+     * @return 演算子の番号。終わる演算子がない場合は-1
+     */
+    int terminal(int node) {
+        return terminal[node];
+    }
+
+    @Override
+    public String toString() {
+        return "OperatorTable" + Arrays.toString(operators);
+    }
+
+    /**
+     * 演算子とその順序から求めた、プロセスに依存しないハッシュ値を返します。
+     */
+    int fingerprint() {
+        return Arrays.hashCode(operators);
+    }
+
+    private static final class Trie {
+        final Map<Character, Trie> children = new TreeMap<>();
+        int id = -1;
+
+        int count() {
+            int n = 1;
+            for (Trie t : children.values()) {
+                n += t.count();
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import static com.unitedjiga.common.util.CharClassTable.LINE_TERMINATOR;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 入力を行終端文字の直後で分割し、分割した範囲ごとに並列に字句解析します。
+ * 行終端文字は常に単独の文字トークンになるため、その直後で分割しても逐次に字句解析した結果と同じトークンと空白が得られます。
+ * 範囲の字句解析はストリームの消費に合わせてプールの並列度の2倍までだけ先行させ、
+ * 読み終えた範囲のトークンは保持しないため、ヒープに保持されるトークンは入力の大きさによらず一定の範囲に収まります。
+ *
+ * @author Junji Mikami
+ */
+final class ParallelLexer {
+
+    static final int MIN_CHUNK_SIZE = 1 << 16;
+    static final int MAX_CHUNK_SIZE = 1 << 18;
+    private static final int SEARCH_SIZE = 1 << 16;
+
+    private ParallelLexer() {
+    }
+
+    static Stream<Lexeme> lex(CharSequence input, LexerSpec spec, ForkJoinPool pool) {
+        char[] a = Lexer.toCharArray(input);
+        CharClassTable table = spec.table;
+        // 規則や演算子に一致するトークンとコメントは行終端文字を含むことがあるため、それらがある場合は分割しません。
+        int chunkSize = splittable(spec) ? chunkSize(a.length, pool) : a.length;
+        return pipeline(pool, new ChunkSource() {
+            private int start;
+
+            @Override
+            public Iterator<Lexeme> next() {
+                if (start >= a.length) {
+                    return null;
+                }
+                int from = start;
+                start = a.length - from <= chunkSize ? a.length : boundary(a, from + chunkSize, table);
+                return lexemes(new Lexer(a, from, start, spec));
+            }
+        });
+    }
+
+    static Stream<Lexeme> lex(Path path, Charset cs, LexerSpec spec, ForkJoinPool pool) throws IOException {
+        int byteLimit = byteLimit(cs);
+        if (byteLimit == 0 || !splittable(spec) || !Files.isRegularFile(path)) {
+            return sequential(Lexer.open(path, cs, spec));
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size;
+        try {
+            size = channel.size();
+            // メモリーマップできるかを先に確かめます。範囲は字句解析する直前にマップします。
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1));
+        } catch (UnsupportedOperationException ex) {
+            // メモリーマップできないファイルは逐次に字句解析します。
+            channel.close();
+            return sequential(Lexer.open(path, cs, spec));
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        long chunkSize = chunkSize(size, pool);
+        return pipeline(pool, new ChunkSource() {
+            private long start;
+            private Lexer tail;
+
+            @Override
+            public Iterator<Lexeme> next() throws IOException {
+                if (start >= size || tail != null) {
+                    return null;
+                }
+                long from = start;
+                start = size - from <= chunkSize ? size
+                        : boundary(channel, from + chunkSize, size, spec.table, byteLimit);
+                if (start - from > Integer.MAX_VALUE) {
+                    // マップできない長さの範囲がある場合は、以降を逐次に字句解析します。
+                    tail = Lexer.open(path, ByteReader.replacing(cs), spec, from);
+                    return lexemes(tail);
+                }
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, from, start - from);
+                // 分割できる仕様と文字セットでは、範囲のバイトを文字に変換せずに走査します。
+                return new ByteLexer(chunk, cs, spec);
+            }
+
+            @Override
+            public boolean sequential() {
+                return tail != null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    channel.close();
+                } finally {
+                    if (tail != null) {
+                        tail.close();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 指定の仕様のトークンが、行終端文字の直後で分割しても変わらない場合にtrueを返します。
+     */
+    private static boolean splittable(LexerSpec spec) {
+        return spec.rules == null && spec.operators == null && spec.delimiters == null;
+    }
+
+    private static long chunkSize(long length, ForkJoinPool pool) {
+        return Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, length / (pool.getParallelism() * 4L) + 1));
+    }
+
+    private static int chunkSize(int length, ForkJoinPool pool) {
+        return (int) chunkSize((long) length, pool);
+    }
+
+    /**
+     * 文字の境界で分割できる文字セットについて、行終端文字として検索するバイトの上限を返します。
+     * US-ASCIIとUTF-8ではASCII文字のバイトが複数バイトの文字の一部になることはなく、
+     * 不正な入力として置換される範囲にも含まれません。
+     *
+     * @return バイトの上限。バイト単位で分割できない文字セットの場合は0
+     */
+    private static int byteLimit(Charset cs) {
+        if (cs.equals(StandardCharsets.ISO_8859_1)) {
+            return 0x100;
+        }
+        if (cs.equals(StandardCharsets.UTF_8) || cs.equals(StandardCharsets.US_ASCII)) {
+            return 0x80;
+        }
+        return 0;
+    }
+
+    /**
+     * 指定の位置以降で最初の行終端文字の直後の位置を返します。
+     */
+    private static int boundary(char[] a, int from, CharClassTable table) {
+        byte[][] pages = table.pages;
+        int i = from;
+        if (Character.isLowSurrogate(a[i]) && Character.isHighSurrogate(a[i - 1])) {
+            i++;
+        }
+        while (i < a.length) {
+            int c = Character.codePointAt(a, i);
+            i += Character.charCount(c);
+            if (pages[c >>> 8][c & 0xff] == LINE_TERMINATOR) {
+                return i;
+            }
+        }
+        return a.length;
+    }
+
+    private static long boundary(FileChannel channel, long from, long size, CharClassTable table, int byteLimit)
+            throws IOException {
+        byte[] types = table.pages[0];
+        // 行は短いことが多いため、小さく読み始めて読む量を増やします。
+        ByteBuffer bb = ByteBuffer.allocate(SEARCH_SIZE);
+        int window = 1 << 12;
+        long p = from;
+        while (p < size) {
+            bb.clear().limit(window);
+            window = Math.min(window * 2, SEARCH_SIZE);
+            int n = channel.read(bb, p);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                int b = bb.get(i) & 0xff;
+                if (b < byteLimit && types[b] == LINE_TERMINATOR) {
+                    return p + i + 1;
+                }
+            }
+            p += n;
+        }
+        return size;
+    }
+
+    private static Lexeme[] lexAll(Iterator<Lexeme> it) {
+        List<Lexeme> list = new ArrayList<>();
+        while (it.hasNext()) {
+            list.add(it.next());
+        }
+        return list.toArray(new Lexeme[list.size()]);
+    }
+
+    /**
+     * 指定のLexerのトークンを、直前にスキップした空白とともに返すイテレータを返します。
+     */
+    static Iterator<Lexeme> lexemes(Lexer lexer) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return lexer.hasNext();
+            }
+
+            @Override
+            public Lexeme next() {
+                boolean word = lexer.hasNextWord();
+                String text = lexer.next();
+                return new Lexeme(text, lexer.skippedWhitespace(), word);
+            }
+        };
+    }
+
+    /**
+     * 分割した範囲のトークンのイテレータを、入力の順に返します。
+     */
+    private interface ChunkSource extends Closeable {
+        /**
+         * 次の範囲のトークンのイテレータを返します。
+         *
+         * @return 次の範囲のイテレータ。範囲がない場合はnull
+         */
+        Iterator<Lexeme> next() throws IOException;
+
+        /**
+         * 直前に返したイテレータを、プールで字句解析せずに入力の終わりまで逐次に読み込む場合にtrueを返します。
+         */
+        default boolean sequential() {
+            return false;
+        }
+
+        /**
+         * ストリームを閉じる際に、入力を閉じます。
+         */
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    /**
+     * 範囲をプールで字句解析し、入力の順序でトークンを返すストリームを返します。
+     */
+    private static Stream<Lexeme> pipeline(ForkJoinPool pool, ChunkSource source) {
+        Pipeline it = new Pipeline(pool, source);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL),
+                false).onClose(() -> {
+                    it.cancel();
+                    try {
+                        source.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    /**
+     * 範囲の字句解析をプールの並列度の2倍までだけ先行させ、トークンを入力の順序で返すイテレータです。
+     * 読み終えた範囲のタスクとトークンへの参照は保持しません。
+     */
+    private static final class Pipeline implements Iterator<Lexeme> {
+
+        private static final Lexeme[] EMPTY = {};
+
+        private final ForkJoinPool pool;
+        private final ChunkSource source;
+        private final int maxInFlight;
+        private final ArrayDeque<ForkJoinTask<Lexeme[]>> inFlight = new ArrayDeque<>();
+        private boolean exhausted;
+        /** 範囲に分割せずに逐次に読み込む残りの入力のトークン。 */
+        private Iterator<Lexeme> tail;
+        private Lexeme[] current = EMPTY;
+        private int index;
+
+        Pipeline(ForkJoinPool pool, ChunkSource source) {
+            this.pool = pool;
+            this.source = source;
+            this.maxInFlight = Math.max(2, pool.getParallelism() * 2);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index == current.length) {
+                submit();
+                ForkJoinTask<Lexeme[]> task = inFlight.poll();
+                if (task == null) {
+                    return tail != null && tail.hasNext();
+                }
+                // 読み終えた範囲のトークンを手放してから、空いた分の範囲を投入します。
+                current = EMPTY;
+                submit();
+                current = task.join();
+                index = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Lexeme next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return index < current.length ? current[index++] : tail.next();
+        }
+
+        private void submit() {
+            while (!exhausted && inFlight.size() < maxInFlight) {
+                Iterator<Lexeme> chunk;
+                try {
+                    chunk = source.next();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                if (chunk == null) {
+                    exhausted = true;
+                } else if (source.sequential()) {
+                    tail = chunk;
+                    exhausted = true;
+                } else {
+                    inFlight.add(pool.submit(() -> lexAll(chunk)));
+                }
+            }
+        }
+
+        void cancel() {
+            exhausted = true;
+            inFlight.forEach(t -> t.cancel(false));
+            inFlight.clear();
+            current = EMPTY;
+        }
+    }
+
+    private static Stream<Lexeme> sequential(Lexer lexer) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(lexemes(lexer),
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(lexer::close);
+    }
+}
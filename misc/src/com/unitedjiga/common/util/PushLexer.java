@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import static com.unitedjiga.common.util.CharClassTable.WHITESPACE;
+import static com.unitedjiga.common.util.CharClassTable.WORD;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 入力を断片ごとに受け取って字句解析するLexerです。
+ * {@link Lexer}が文字ストリームから読み込むのに対し、このクラスは呼び出し側から渡された文字を字句解析し、
+ * 確定したトークンをコールバックに渡します。
+ * 読み込みで待機しないため、1つのスレッドで多数の入力を並行して字句解析できます。
+ *
+ * <pre>
+ * {@code
+ * PushLexer lexer = new PushLexer(spec, lexeme -> ...);
+ * lexer.feed(chunk1);
+ * lexer.feed(chunk2);
+ * lexer.endOfInput();
+ * }
+ * </pre>
+ *
+ * <p>
+ * 断片の終わりで途切れたワード、空白、サロゲートペアは次の断片と合わせて字句解析されるため、
+ * トークンと直前にスキップした空白は、入力全体をLexerで字句解析した場合と同じです。
+ * このクラスは仕様の文字設定に従ってトークンを切り出します。
+ * トークンの規則、演算子の表、引用符またはコメントを設定した仕様はトークンの切り出し方が変わるため、使用できません。
+ * キーワードの表はトークンを変えないため使用できますが、分類は報告しません。
+ * モードは切り替えず、仕様の既定のモードで字句解析します。
+ * このクラスはスレッドセーフではありません。また、コールバックからこのインスタンスを操作しないでください。
+ *
+ * @author Junji Mikami
+ * @see Lexer
+ */
+public final class PushLexer {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private final CharClassTable table;
+    private final Consumer<? super Lexeme> action;
+    private char[] buf = new char[BUFFER_SIZE];
+    private int start;
+    private int limit;
+    private boolean ended;
+
+    /**
+     * 指定の仕様で字句解析し、トークンを指定のコールバックに渡す新しいLexerを構築します。
+     *
+     * @param spec   仕様
+     * @param action トークンを受け取るコールバック
+     * @throws IllegalArgumentException 仕様にトークンの規則、演算子の表、引用符またはコメントが設定されている場合
+     * @throws NullPointerException     引数のいずれかがnullの場合
+     */
+    public PushLexer(LexerSpec spec, Consumer<? super Lexeme> action) {
+        if (spec.rules != null || spec.operators != null || spec.delimiters != null) {
+            throw new IllegalArgumentException("Rules, operators, quotes and comments are not supported");
+        }
+        this.table = spec.table;
+        this.action = Objects.requireNonNull(action);
+    }
+
+    /**
+     * 指定の断片の残りの文字をすべて受け取り、確定したトークンをコールバックに渡します。
+     * 断片の位置は上限まで進みます。
+     * 断片の終わりに続く可能性のあるワードと空白は、次の断片または入力の終わりまで保持されます。
+     *
+     * @param chunk 入力の断片
+     * @throws IllegalStateException 入力の終わりを通知した後の場合
+     * @throws NullPointerException  指定の断片がnullの場合
+     */
+    public void feed(CharBuffer chunk) {
+        if (ended) {
+            throw new IllegalStateException();
+        }
+        int n = chunk.remaining();
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, limit - start);
+            limit -= start;
+            start = 0;
+        }
+        if (limit + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, limit + n));
+        }
+        chunk.get(buf, limit, n);
+        limit += n;
+        lex();
+    }
+
+    /**
+     * 入力の終わりを通知し、保持しているワードをトークンとしてコールバックに渡します。
+     * 入力の末尾の空白は{@link #trailingWhitespace()}で取得できます。
+     * 2回目以降の呼び出しは何もしません。
+     */
+    public void endOfInput() {
+        if (!ended) {
+            ended = true;
+            lex();
+        }
+    }
+
+    /**
+     * 最後にコールバックに渡したトークンに後続する空白のうち、受け取り済みの空白の文字列を返します。
+     *
+     * @return 後続する空白の文字列。空白が後続しない場合、長さ0の文字列。
+     */
+    public String trailingWhitespace() {
+        return new String(buf, start, table.span(buf, start, limit, WHITESPACE) - start);
+    }
+
+    /**
+     * 入力の終わりを通知済みの場合にtrueを返します。
+     *
+     * @return 入力の終わりを通知済みの場合にtrue
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * 保持している入力を破棄し、新しい入力を受け取る状態に戻します。
+     * バッファと仕様はそのまま再利用されます。
+     */
+    public void reset() {
+        start = 0;
+        limit = 0;
+        ended = false;
+    }
+
+    private void lex() {
+        CharClassTable table = this.table;
+        for (;;) {
+            int i = start;
+            int tokStart = table.span(buf, i, limit, WHITESPACE);
+            if (isIncomplete(tokStart)) {
+                return;
+            }
+            int c = Character.codePointAt(buf, tokStart, limit);
+            int tokEnd = tokStart + Character.charCount(c);
+            boolean word = table.classOf(c) == WORD;
+            if (word) {
+                tokEnd = table.span(buf, tokEnd, limit, WORD);
+                if (!ended && isIncomplete(tokEnd)) {
+                    return;
+                }
+            }
+            start = tokEnd;
+            action.accept(new Lexeme(new String(buf, tokStart, tokEnd - tokStart),
+                    new String(buf, i, tokStart - i), word));
+        }
+    }
+
+    /**
+     * 指定の位置で受け取り済みの入力が終わり、トークンを確定できないかを返します。
+     */
+    private boolean isIncomplete(int i) {
+        return i == limit || i == limit - 1 && !ended && Character.isHighSurrogate(buf[i]);
+    }
+}
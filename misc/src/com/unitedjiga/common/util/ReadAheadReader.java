@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 別のスレッドで文字ストリームを先読みするReaderです。
+ * 読み込みスレッドは固定の数のバッファのリングを、このReaderの読み込みより先に満たします。
+ * ネットワークファイルシステムや展開しながら読むストリームのように遅い文字ストリームで、
+ * 字句解析と入出力を並行させるために使用します。
+ * LexerやTokenizerFactory#createTokenizer(Reader)に文字ストリームとして渡せます。
+ *
+ * <pre>
+ * {@code
+ * try (ReadAheadReader r = new ReadAheadReader(reader, 4, Thread::new);
+ *         Lexer lexer = new Lexer(r, spec)) {
+ *     while (lexer.hasNext()) {
+ *         ...
+ *     }
+ *     System.out.println(r.stallNanos());
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * 読み込みを待った時間は{@link #stallNanos()}、読み込みスレッドが空きバッファを待った時間は{@link #idleNanos()}で得られます。
+ * 待った時間が長い場合はリングの数を増やしても効果がなく、文字ストリームの速度が律速しています。
+ * 読み込みスレッドが待つ時間が長い場合は、リングの数は十分です。
+ * このReaderの読み込みは1つのスレッドから行う必要があります。
+ *
+ * @author Junji Mikami
+ */
+public final class ReadAheadReader extends Reader {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * 読み込みスレッドが満たしたバッファです。長さが負の場合は文字ストリームの終わりを表します。
+     * 文字ストリームの終わりのバッファは、読み込みで発生した例外またはエラーを持つことがあります。
+     */
+    private static final class Chunk {
+        final char[] buf;
+        int length;
+        Throwable error;
+
+        Chunk(int size) {
+            buf = new char[size];
+        }
+    }
+
+    private final Reader in;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread thread;
+    private volatile boolean closed;
+    /**
+     * 読み込みスレッドの終了と、終了を待たずに閉じることのうち、先に行った側がtrueにします。
+     * 後の側が文字ストリームを閉じます。
+     */
+    private final AtomicBoolean handoff = new AtomicBoolean();
+    private volatile long idleNanos;
+    private Chunk chunk;
+    private int pos;
+    private boolean eof;
+    private long stallNanos;
+    private long stallCount;
+
+    /**
+     * 指定の文字ストリームを、指定の数のバッファで先読みするReaderを構築します。
+     * 読み込みスレッドは指定のファクトリーで作成し、すぐに開始します。
+     * 仮想スレッドを使用する場合はThread.ofVirtual().factory()を指定します。
+     *
+     * @param in      文字ストリーム
+     * @param depth   先読みするバッファの数
+     * @param factory 読み込みスレッドのファクトリー
+     * @throws IllegalArgumentException バッファの数が1より小さい場合
+     * @throws NullPointerException     文字ストリームまたはファクトリーがnullの場合
+     */
+    public ReadAheadReader(Reader in, int depth, ThreadFactory factory) {
+        this(in, depth, BUFFER_SIZE, factory);
+    }
+
+    /**
+     * 指定の文字ストリームを、指定の数と大きさのバッファで先読みするReaderを構築します。
+     *
+     * @param in         文字ストリーム
+     * @param depth      先読みするバッファの数
+     * @param bufferSize バッファの大きさ
+     * @param factory    読み込みスレッドのファクトリー
+     * @throws IllegalArgumentException バッファの数または大きさが1より小さい場合
+     * @throws NullPointerException     文字ストリームまたはファクトリーがnullの場合
+     * @see #ReadAheadReader(Reader, int, ThreadFactory)
+     */
+    public ReadAheadReader(Reader in, int depth, int bufferSize, ThreadFactory factory) {
+        if (depth < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException(depth + ", " + bufferSize);
+        }
+        this.in = Objects.requireNonNull(in);
+        // 読み込み中のバッファの分だけ1つ多く用意します。
+        free = new ArrayBlockingQueue<>(depth + 1);
+        filled = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i <= depth; i++) {
+            free.add(new Chunk(bufferSize));
+        }
+        thread = factory.newThread(this::fill);
+        if (thread == null) {
+            throw new IllegalArgumentException("Thread factory returned null");
+        }
+        thread.start();
+    }
+
+    /**
+     * 読み込みスレッドの処理です。空いたバッファを文字ストリームから満たし、順に受け渡します。
+     */
+    private void fill() {
+        try {
+            for (;;) {
+                Chunk c = free.poll();
+                if (c == null) {
+                    long start = System.nanoTime();
+                    c = free.take();
+                    idleNanos += System.nanoTime() - start;
+                }
+                try {
+                    c.length = closed ? -1 : in.read(c.buf, 0, c.buf.length);
+                } catch (IOException | RuntimeException | Error ex) {
+                    c.length = -1;
+                    c.error = ex;
+                }
+                // バッファはリングの数しかないため、満たしたバッファの受け渡しで待つことはありません。
+                filled.put(c);
+                if (c.length < 0) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // 閉じられたため終了します。
+        } finally {
+            if (!handoff.compareAndSet(false, true)) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // 閉じたReaderには報告できません。
+                }
+            }
+        }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, cbuf.length);
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (chunk != null && pos == chunk.length) {
+            free.add(chunk);
+            chunk = null;
+        }
+        if (chunk == null) {
+            if (eof) {
+                return -1;
+            }
+            chunk = next();
+            pos = 0;
+            if (chunk.length < 0) {
+                eof = true;
+                Throwable error = chunk.error;
+                chunk = null;
+                if (error instanceof IOException) {
+                    throw (IOException) error;
+                }
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException) error;
+                }
+                if (error != null) {
+                    throw (Error) error;
+                }
+                return -1;
+            }
+        }
+        int n = Math.min(len, chunk.length - pos);
+        System.arraycopy(chunk.buf, pos, cbuf, off, n);
+        pos += n;
+        return n;
+    }
+
+    private Chunk next() throws IOException {
+        Chunk c = filled.poll();
+        if (c != null) {
+            return c;
+        }
+        long start = System.nanoTime();
+        try {
+            c = filled.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        stallNanos += System.nanoTime() - start;
+        stallCount++;
+        return c;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return chunk != null && pos < chunk.length || !filled.isEmpty();
+    }
+
+    /**
+     * このReaderの読み込みが、読み込みスレッドがバッファを満たすのを待った時間の合計を返します。
+     *
+     * @return 待った時間のナノ秒
+     */
+    public long stallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * このReaderの読み込みが、読み込みスレッドがバッファを満たすのを待った回数を返します。
+     *
+     * @return 待った回数
+     */
+    public long stallCount() {
+        return stallCount;
+    }
+
+    /**
+     * 読み込みスレッドが、すべてのバッファが満たされていて空きを待った時間の合計を返します。
+     *
+     * @return 待った時間のナノ秒
+     */
+    public long idleNanos() {
+        return idleNanos;
+    }
+
+    /**
+     * 読み込みスレッドを終了し、文字ストリームを閉じます。
+     * 読み込みスレッドが文字ストリームを読み込んでいる間は、その読み込みが終わるまで最大で1秒待ちます。
+     * 読み込みが終わらない場合は待たずに戻り、文字ストリームは読み込みが終わった時点で読み込みスレッドが閉じます。
+     * この場合、閉じる際の入出力エラーは報告されません。
+     *
+     * @throws IOException 文字ストリームを閉じる際に入出力エラーが発生した場合
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        thread.interrupt();
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_MILLIS * 1_000_000;
+        for (;;) {
+            try {
+                long millis = (deadline - System.nanoTime()) / 1_000_000;
+                if (millis > 0) {
+                    thread.join(millis);
+                }
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        chunk = null;
+        filled.clear();
+        if (thread.isAlive() && handoff.compareAndSet(false, true)) {
+            return;
+        }
+        in.close();
+    }
+}
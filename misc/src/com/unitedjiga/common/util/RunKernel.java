@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+/**
+ * 同じ種別の文字が続く範囲を複数の文字単位で走査するカーネルです。
+ * 種別は{@code '\u005Cu0100'}より小さい文字の範囲の並びで指定し、範囲外の文字は1文字単位の走査に任せます。
+ *
+ * <p>
+ * 使用するカーネルはシステムプロパティ{@value #PROPERTY}で選択できます。
+ * <ul>
+ * <li>{@code vector}: jdk.incubator.vectorモジュールのVector APIで16～64文字単位に走査します。
+ * <li>{@code swar}: 4文字をlongに詰めて、レジスタ内の並列演算で走査します。
+ * <li>{@code scalar}: カーネルを使用せず、1文字単位で走査します。
+ * </ul>
+ * 指定がない場合、jdk.incubator.vectorモジュールが実行時に存在すれば{@code vector}、存在しなければ{@code swar}を使用します。
+ *
+ * @author Junji Mikami
+ */
+abstract class RunKernel {
+
+    static final String PROPERTY = "com.unitedjiga.common.util.Lexer.kernel";
+
+    static final RunKernel INSTANCE = select(System.getProperty(PROPERTY));
+
+    /**
+     * 1回の走査で判定する文字数を返します。残りの文字数がこれより少ない場合、カーネルは使用されません。
+     *
+     * @return 1回の走査で判定する文字数
+     */
+    abstract int width();
+
+    /**
+     * 文字配列の指定の位置から、指定の範囲のいずれかに含まれる文字が続く範囲の終わりを返します。
+     * 範囲は最初と最後の文字を交互に並べた配列で指定します。
+     * 判定する文字数に満たない末尾は走査せず、その先頭の位置を返すことがあります。
+     *
+     * @param a      文字配列
+     * @param from   開始位置
+     * @param to     終了位置
+     * @param ranges 範囲の並び
+     * @return 範囲に含まれない最初の文字の位置、または走査しなかった末尾の先頭の位置
+     */
+    abstract int skip(char[] a, int from, int to, char[] ranges);
+
+    static RunKernel select(String name) {
+        if ("scalar".equals(name)) {
+            return new Scalar();
+        }
+        if ("swar".equals(name)) {
+            return new Swar();
+        }
+        if (name == null || "vector".equals(name)) {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    return (RunKernel) Class.forName("com.unitedjiga.common.util.VectorRunKernel")
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError ex) {
+                    // Vector APIを使用できない場合はSWARで走査します。
+                }
+            }
+            return new Swar();
+        }
+        throw new IllegalArgumentException(PROPERTY + "=" + name);
+    }
+
+    /**
+     * カーネルを使用しない実装です。
+     */
+    static final class Scalar extends RunKernel {
+
+        @Override
+        int width() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        int skip(char[] a, int from, int to, char[] ranges) {
+            return from;
+        }
+    }
+
+    /**
+     * 4文字を16ビットのレーンとしてlongに詰めて判定する実装です。
+     * 範囲は{@code '\u005Cu0100'}より小さいため、レーンの最上位ビットで範囲の判定ができます。
+     * 最初に範囲外となるレーンより下位のレーンの判定は、上位のレーンの桁借りの影響を受けません。
+     */
+    static final class Swar extends RunKernel {
+
+        private static final long ONES = 0x0001_0001_0001_0001L;
+        private static final long HIGHS = 0x8000_8000_8000_8000L;
+
+        @Override
+        int width() {
+            return 4;
+        }
+
+        @Override
+        int skip(char[] a, int from, int to, char[] ranges) {
+            int i = from;
+            while (i + 4 <= to) {
+                long x = a[i] | (long) a[i + 1] << 16 | (long) a[i + 2] << 32 | (long) a[i + 3] << 48;
+                long biased = x | HIGHS;
+                long in = 0;
+                for (int r = 0; r < ranges.length; r += 2) {
+                    // 各レーンで、x >= lowなら(0x8000 + x - low)の最上位ビットが立ち、
+                    // x <= highなら(0x8000 + high - x)の最上位ビットが立ちます。
+                    long ge = biased - ranges[r] * ONES;
+                    long le = (ranges[r + 1] * ONES | HIGHS) - x;
+                    in |= ge & le;
+                }
+                // 最上位ビットが立っている文字は範囲外です。その文字のレーンで生じた桁借りは上位のレーンにだけ影響します。
+                in &= ~x & HIGHS;
+                if (in != HIGHS) {
+                    return i + Long.numberOfTrailingZeros(~in & HIGHS) / 16;
+                }
+                i += 4;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.Objects;
+
+/**
+ * {@link Lexer#nextBatch(TokenBatch)}が複数のトークンの種類と位置を格納するバッチです。
+ * トークンごとの値はプリミティブ型の配列に格納され、配列はバッチを再利用する間、同じものが使用されます。
+ * 配列の有効な要素は先頭から{@link #size()}個です。
+ *
+ * <pre>
+ * {@code
+ * TokenBatch batch = new TokenBatch(1024);
+ * int words = 0;
+ * int n;
+ * while ((n = lexer.nextBatch(batch)) > 0) {
+ *     int[] kinds = batch.kinds();
+ *     for (int i = 0; i < n; i++) {
+ *         if (kinds[i] == TokenBatch.WORD) {
+ *             words++;
+ *         }
+ *     }
+ * }
+ * }
+ * </pre>
+ *
+ * @author Junji Mikami
+ */
+public final class TokenBatch {
+
+    /**
+     * ワードトークンの種類です。
+     */
+    public static final int WORD = 0;
+    /**
+     * 行終端文字以外の文字トークンの種類です。
+     */
+    public static final int CHAR = 1;
+    /**
+     * 行終端文字の文字トークンの種類です。
+     */
+    public static final int LINE_TERMINATOR = 2;
+    /**
+     * 演算子トークンの種類です。
+     *
+     * @see LexerSpec.Builder#operators(OperatorTable)
+     */
+    public static final int OPERATOR = 3;
+    /**
+     * 引用トークンの種類です。
+     *
+     * @see LexerSpec.Builder#quoteChars(char...)
+     */
+    public static final int QUOTED = 4;
+    /**
+     * コメントのトークンの種類です。
+     *
+     * @see LexerSpec.Builder#reportComments(boolean)
+     */
+    public static final int COMMENT = 5;
+
+    final int[] kinds;
+    final long[] starts;
+    final int[] lengths;
+    final int[] whitespaceLengths;
+    /** トークンの先頭の、Lexerのバッファを詰めても変わらない位置。 */
+    final long[] positions;
+    private int size;
+    private Lexer lexer;
+
+    /**
+     * 指定の容量のバッチを構築します。
+     *
+     * @param capacity 1回に格納するトークンの最大数
+     * @throws IllegalArgumentException 容量が0以下の場合
+     */
+    public TokenBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.valueOf(capacity));
+        }
+        kinds = new int[capacity];
+        starts = new long[capacity];
+        lengths = new int[capacity];
+        whitespaceLengths = new int[capacity];
+        positions = new long[capacity];
+    }
+
+    void set(int size, Lexer lexer) {
+        this.size = size;
+        this.lexer = lexer;
+    }
+
+    /**
+     * 1回に格納するトークンの最大数を返します。
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return kinds.length;
+    }
+
+    /**
+     * 格納されているトークンの数を返します。
+     *
+     * @return トークンの数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * トークンの種類の配列を返します。
+     * 種類は{@link #WORD}、{@link #CHAR}、{@link #LINE_TERMINATOR}、{@link #OPERATOR}、{@link #QUOTED}、{@link #COMMENT}のいずれかです。
+     *
+     * @return トークンの種類の配列
+     */
+    public int[] kinds() {
+        return kinds;
+    }
+
+    /**
+     * トークンの先頭の、入力の先頭からのオフセットの配列を返します。
+     * オフセットは{@link Lexer#offset()}と同じくcharの単位で数えます。
+     *
+     * @return トークンのオフセットの配列
+     */
+    public long[] starts() {
+        return starts;
+    }
+
+    /**
+     * トークンの長さの配列を返します。
+     *
+     * @return トークンの長さの配列
+     */
+    public int[] lengths() {
+        return lengths;
+    }
+
+    /**
+     * トークンの直前にスキップした空白の長さの配列を返します。
+     *
+     * @return スキップした空白の長さの配列
+     */
+    public int[] whitespaceLengths() {
+        return whitespaceLengths;
+    }
+
+    /**
+     * 指定の位置のトークンの文字列を返します。
+     * 文字列はLexerのバッファから生成するため、Lexerで次にトークンを進めるまでの間だけ呼び出せます。
+     * 先読みはトークンを進めないため、先読みした後も呼び出せます。
+     *
+     * @param index トークンの位置
+     * @return トークンの文字列
+     * @throws IndexOutOfBoundsException 位置が範囲外の場合
+     */
+    public String text(int index) {
+        Objects.checkIndex(index, size);
+        return lexer.text(positions[index], lengths[index]);
+    }
+}
@@ -0,0 +1,819 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 名前付きの正規表現で定義したトークンの規則です。
+ * すべての規則は構築時に1つの最小化された決定性有限オートマトン(DFA)にまとめられ、
+ * Lexerはトークンの先頭から1回の走査で規則に一致するトークンを切り出します。
+ * 規則ごとにjava.util.regexのパターンを順に試すのと異なり、走査は規則の数に依存しません。
+ *
+ * <p>
+ * 複数の規則に一致する場合は最も長く一致する規則を選び(最長一致)、
+ * 長さが同じ場合は先に追加した規則を選びます。
+ * 規則の番号は追加した順に0から数えます。
+ *
+ * <p>
+ * 正規表現はcharの単位で照合し、次の構文に対応します。
+ * <ul>
+ * <li>リテラル文字、{@code .}(行終端文字\n、\r以外の任意の文字)</li>
+ * <li>文字クラス{@code [abc]}、{@code [^a-z]}</li>
+ * <li>エスケープ{@code \t}、{@code \n}、{@code \r}、{@code \f}、{@code \xhh}、{@code \}{@code uhhhh}、
+ * {@code \d}、{@code \D}、{@code \w}、{@code \W}、{@code \s}、{@code \S}、および英数字以外の文字のエスケープ</li>
+ * <li>連接、選択{@code |}、グループ{@code (...)}、{@code (?:...)}</li>
+ * <li>量指定子{@code *}、{@code +}、{@code ?}、{@code {n}}、{@code {n,}}、{@code {n,m}}</li>
+ * </ul>
+ * 後方参照、先読み、アンカーなど、DFAで表せない構文には対応しません。
+ * このクラスのインスタンスは不変で、スレッドセーフです。
+ *
+ * <pre>
+ * {@code
+ * static final TokenRules RULES = TokenRules.builder()
+ *         .rule("IF", "if")
+ *         .rule("IDENT", "[A-Za-z_]\\w*")
+ *         .rule("NUMBER", "\\d+(\\.\\d+)?")
+ *         .rule("ARROW", "->")
+ *         .build();
+ * }
+ * </pre>
+ *
+ * @author Junji Mikami
+ * @see LexerSpec.Builder#rules(TokenRules)
+ * @see Lexer#ruleId()
+ */
+public final class TokenRules {
+
+    private static final int MAX_CHAR = 0xFFFF;
+    private static final int[] DIGIT = { '0', '9' };
+    private static final int[] WORD = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    private static final int[] SPACE = { '\t', '\r', ' ', ' ' };
+    private static final int[] DOT = complement(new int[] { '\n', '\n', '\r', '\r' });
+
+    private final String[] names;
+    private final int classes;
+    private final int[] asciiClass;
+    private final int[] points;
+    /** 状態と文字の区分から次の状態を引く遷移表。行き止まりは-1です。 */
+    final int[] next;
+    /** 状態ごとの受理する規則の番号。受理しない状態は-1です。 */
+    final int[] accept;
+
+    private TokenRules(String[] names, int[] points, int[] next, int[] accept) {
+        this.names = names;
+        this.points = points;
+        this.classes = points.length;
+        this.next = next;
+        this.accept = accept;
+        asciiClass = new int[0x80];
+        for (int c = 0; c < asciiClass.length; c++) {
+            asciiClass[c] = classOf(c);
+        }
+    }
+
+    /**
+     * 規則が空のビルダーを返します。
+     *
+     * @return 新しいビルダー
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 規則の数を返します。
+     *
+     * @return 規則の数
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 指定の番号の規則の名前を返します。
+     *
+     * @param id 規則の番号
+     * @return 規則の名前
+     * @throws IndexOutOfBoundsException 番号が範囲外の場合
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * 指定の名前の規則の番号を返します。
+     *
+     * @param name 規則の名前
+     * @return 規則の番号。規則がない場合は-1
+     */
+    public int ruleId(String name) {
+        return Arrays.asList(names).indexOf(name);
+    }
+
+    /**
+     * 最小化したDFAの状態の数を返します。
+     *
+     * @return DFAの状態の数
+     */
+    public int stateCount() {
+        return accept.length;
+    }
+
+    /**
+     * 指定の状態から指定の文字で遷移した状態を返します。開始状態は0です。
+     *
+     * @return 次の状態。一致する規則がこれ以上ない場合は-1
+     */
+    int step(int state, char c) {
+        int cls = c < 0x80 ? asciiClass[c] : classOf(c);
+        return next[state * classes + cls];
+    }
+
+    private int classOf(int c) {
+        int i = Arrays.binarySearch(points, c);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenRules" + Arrays.toString(names);
+    }
+
+    /**
+     * 規則の名前と状態遷移表から求めた、プロセスに依存しないハッシュ値を返します。
+     */
+    int fingerprint() {
+        int h = Arrays.hashCode(names);
+        h = 31 * h + Arrays.hashCode(points);
+        h = 31 * h + Arrays.hashCode(next);
+        return 31 * h + Arrays.hashCode(accept);
+    }
+
+    /**
+     * TokenRulesのビルダーです。
+     *
+     * @author Junji Mikami
+     */
+    public static final class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Node> rules = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 規則を追加します。正規表現はこのメソッドで解析されます。
+         *
+         * @param name  規則の名前
+         * @param regex 規則の正規表現
+         * @return このビルダー
+         * @throws NullPointerException     名前または正規表現がnullの場合
+         * @throws PatternSyntaxException   正規表現の構文が正しくない場合
+         * @throws IllegalArgumentException 同じ名前の規則がすでにあるか、正規表現が空文字列に一致する場合
+         */
+        public Builder rule(String name, String regex) {
+            Objects.requireNonNull(name);
+            if (names.contains(name)) {
+                throw new IllegalArgumentException(name);
+            }
+            Node node = new Parser(regex).parse();
+            if (node.nullable()) {
+                throw new IllegalArgumentException(regex);
+            }
+            names.add(name);
+            rules.add(node);
+            return this;
+        }
+
+        /**
+         * 追加した規則から最小化したDFAを構築します。
+         * 構築後もビルダーは引き続き使用でき、構築済みの規則には影響しません。
+         *
+         * @return 新しい規則
+         */
+        public TokenRules build() {
+            return new Compiler(rules).compile(names.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 正規表現の構文木のノードです。
+     */
+    private static final class Node {
+        static final int SET = 0;
+        static final int CAT = 1;
+        static final int ALT = 2;
+        static final int REPEAT = 3;
+        static final int EMPTY = 4;
+
+        final int kind;
+        final int[] set;
+        final Node left;
+        final Node right;
+        final int min;
+        final int max;
+
+        Node(int kind, int[] set, Node left, Node right, int min, int max) {
+            this.kind = kind;
+            this.set = set;
+            this.left = left;
+            this.right = right;
+            this.min = min;
+            this.max = max;
+        }
+
+        boolean nullable() {
+            switch (kind) {
+            case SET:
+                return false;
+            case CAT:
+                return left.nullable() && right.nullable();
+            case ALT:
+                return left.nullable() || right.nullable();
+            case REPEAT:
+                return min == 0 || left.nullable();
+            default:
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 再帰下降で正規表現を構文木に変換します。
+     */
+    private static final class Parser {
+        private final String regex;
+        private int pos;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Node parse() {
+            Node node = alternation();
+            if (pos < regex.length()) {
+                throw error("Unmatched closing ')'");
+            }
+            return node;
+        }
+
+        private Node alternation() {
+            Node node = concatenation();
+            while (accept('|')) {
+                node = new Node(Node.ALT, null, node, concatenation(), 0, 0);
+            }
+            return node;
+        }
+
+        private Node concatenation() {
+            Node node = null;
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                Node r = repetition();
+                node = node == null ? r : new Node(Node.CAT, null, node, r, 0, 0);
+            }
+            return node == null ? new Node(Node.EMPTY, null, null, null, 0, 0) : node;
+        }
+
+        private Node repetition() {
+            Node node = atom();
+            for (;;) {
+                int min;
+                int max;
+                if (accept('*')) {
+                    min = 0;
+                    max = -1;
+                } else if (accept('+')) {
+                    min = 1;
+                    max = -1;
+                } else if (accept('?')) {
+                    min = 0;
+                    max = 1;
+                } else if (accept('{')) {
+                    min = number();
+                    max = min;
+                    if (accept(',')) {
+                        max = peek() == '}' ? -1 : number();
+                    }
+                    if (!accept('}') || max >= 0 && max < min) {
+                        throw error("Illegal repetition range");
+                    }
+                } else {
+                    return node;
+                }
+                node = new Node(Node.REPEAT, null, node, null, min, max);
+            }
+        }
+
+        private Node atom() {
+            char c = regex.charAt(pos++);
+            switch (c) {
+            case '(':
+                if (accept('?') && !accept(':')) {
+                    throw error("Unsupported group");
+                }
+                Node node = alternation();
+                if (!accept(')')) {
+                    throw error("Unclosed group");
+                }
+                return node;
+            case '[':
+                return set(charClass());
+            case '.':
+                return set(DOT);
+            case '\\':
+                return set(escape());
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                pos--;
+                throw error("Dangling meta character '" + c + "'");
+            case '^':
+            case '$':
+                pos--;
+                throw error("Unsupported anchor");
+            default:
+                return set(new int[] { c, c });
+            }
+        }
+
+        private int[] charClass() {
+            boolean negate = accept('^');
+            int[] set = {};
+            do {
+                if (pos >= regex.length()) {
+                    throw error("Unclosed character class");
+                }
+                int[] item;
+                char c = regex.charAt(pos++);
+                if (c == '\\') {
+                    item = escape();
+                } else if (c == '[') {
+                    pos--;
+                    throw error("Unsupported nested character class");
+                } else {
+                    item = new int[] { c, c };
+                }
+                if (item.length == 2 && item[0] == item[1] && peek() == '-' && pos + 1 < regex.length()
+                        && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    char d = regex.charAt(pos++);
+                    int[] hi = d == '\\' ? escape() : new int[] { d, d };
+                    if (hi.length != 2 || hi[0] != hi[1] || hi[0] < item[0]) {
+                        throw error("Illegal character range");
+                    }
+                    item = new int[] { item[0], hi[0] };
+                }
+                set = union(set, item);
+            } while (!accept(']'));
+            return negate ? complement(set) : set;
+        }
+
+        private int[] escape() {
+            if (pos >= regex.length()) {
+                throw error("Unexpected internal error");
+            }
+            char c = regex.charAt(pos++);
+            switch (c) {
+            case 't':
+                return new int[] { '\t', '\t' };
+            case 'n':
+                return new int[] { '\n', '\n' };
+            case 'r':
+                return new int[] { '\r', '\r' };
+            case 'f':
+                return new int[] { '\f', '\f' };
+            case 'x':
+                return hex(2);
+            case 'u':
+                return hex(4);
+            case 'd':
+                return DIGIT;
+            case 'D':
+                return complement(DIGIT);
+            case 'w':
+                return WORD;
+            case 'W':
+                return complement(WORD);
+            case 's':
+                return SPACE;
+            case 'S':
+                return complement(SPACE);
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    pos--;
+                    throw error("Unsupported escape sequence");
+                }
+                return new int[] { c, c };
+            }
+        }
+
+        private int[] hex(int digits) {
+            int v = 0;
+            for (int i = 0; i < digits; i++) {
+                int d = pos < regex.length() ? Character.digit(regex.charAt(pos), 16) : -1;
+                if (d < 0) {
+                    throw error("Illegal hexadecimal escape sequence");
+                }
+                v = v * 16 + d;
+                pos++;
+            }
+            return new int[] { v, v };
+        }
+
+        private int number() {
+            int start = pos;
+            while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '9') {
+                pos++;
+            }
+            if (start == pos || pos - start > 4) {
+                throw error("Illegal repetition range");
+            }
+            return Integer.parseInt(regex, start, pos, 10);
+        }
+
+        private boolean accept(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private int peek() {
+            return pos < regex.length() ? regex.charAt(pos) : -1;
+        }
+
+        private static Node set(int[] set) {
+            return new Node(Node.SET, set, null, null, 0, 0);
+        }
+
+        private PatternSyntaxException error(String desc) {
+            return new PatternSyntaxException(desc, regex, pos);
+        }
+    }
+
+    /**
+     * 構文木からThompson構成法で非決定性有限オートマトン(NFA)を作り、
+     * 部分集合構成法でDFAに変換してから、同値な状態をまとめて最小化します。
+     * 文字は、いずれの文字集合でも区別されない範囲ごとの区分にまとめて扱います。
+     */
+    private static final class Compiler {
+        private final List<Node> rules;
+        private final List<int[]> sets = new ArrayList<>();
+        private int[] edgeSet = new int[64];
+        private int[] edgeTo = new int[64];
+        private int[][] eps = new int[64][];
+        private int[] nfaAccept = new int[64];
+        private int count;
+
+        Compiler(List<Node> rules) {
+            this.rules = rules;
+        }
+
+        TokenRules compile(String[] names) {
+            int start = newState();
+            for (int r = 0; r < rules.size(); r++) {
+                int[] f = build(rules.get(r));
+                addEpsilon(start, f[0]);
+                nfaAccept[f[1]] = r;
+            }
+
+            // 文字の区分: 各文字集合の境界で0x0000～0xFFFFを分割します。
+            TreeSet<Integer> bounds = new TreeSet<>();
+            bounds.add(0);
+            for (int[] set : sets) {
+                for (int i = 0; i < set.length; i += 2) {
+                    bounds.add(set[i]);
+                    if (set[i + 1] < MAX_CHAR) {
+                        bounds.add(set[i + 1] + 1);
+                    }
+                }
+            }
+            int[] points = bounds.stream().mapToInt(Integer::intValue).toArray();
+            BitSet[] setClasses = new BitSet[sets.size()];
+            for (int s = 0; s < setClasses.length; s++) {
+                int[] set = sets.get(s);
+                BitSet b = new BitSet(points.length);
+                for (int i = 0; i < set.length; i += 2) {
+                    for (int k = Arrays.binarySearch(points, set[i]); k < points.length && points[k] <= set[i + 1]; k++) {
+                        b.set(k);
+                    }
+                }
+                setClasses[s] = b;
+            }
+
+            // 部分集合構成法
+            int classes = points.length;
+            Map<BitSet, Integer> ids = new HashMap<>();
+            List<BitSet> states = new ArrayList<>();
+            List<int[]> table = new ArrayList<>();
+            BitSet initial = new BitSet(count);
+            initial.set(start);
+            closure(initial);
+            ids.put(initial, 0);
+            states.add(initial);
+            for (int d = 0; d < states.size(); d++) {
+                BitSet[] targets = new BitSet[classes];
+                BitSet current = states.get(d);
+                for (int q = current.nextSetBit(0); q >= 0; q = current.nextSetBit(q + 1)) {
+                    if (edgeSet[q] < 0) {
+                        continue;
+                    }
+                    BitSet cs = setClasses[edgeSet[q]];
+                    for (int c = cs.nextSetBit(0); c >= 0; c = cs.nextSetBit(c + 1)) {
+                        if (targets[c] == null) {
+                            targets[c] = new BitSet(count);
+                        }
+                        targets[c].set(edgeTo[q]);
+                    }
+                }
+                int[] row = new int[classes];
+                for (int c = 0; c < classes; c++) {
+                    if (targets[c] == null) {
+                        row[c] = -1;
+                        continue;
+                    }
+                    closure(targets[c]);
+                    Integer id = ids.get(targets[c]);
+                    if (id == null) {
+                        id = states.size();
+                        ids.put(targets[c], id);
+                        states.add(targets[c]);
+                    }
+                    row[c] = id;
+                }
+                table.add(row);
+            }
+            int n = states.size();
+            int[] accept = new int[n];
+            for (int d = 0; d < n; d++) {
+                accept[d] = -1;
+                BitSet s = states.get(d);
+                for (int q = s.nextSetBit(0); q >= 0; q = s.nextSetBit(q + 1)) {
+                    if (nfaAccept[q] >= 0 && (accept[d] < 0 || nfaAccept[q] < accept[d])) {
+                        accept[d] = nfaAccept[q];
+                    }
+                }
+            }
+            return minimize(names, points, table, accept);
+        }
+
+        /**
+         * 受理する規則で状態を分け、遷移先の区分が異なる状態を分割し続けて最小化します。
+         * 区分の番号は状態の番号順に振るため、開始状態は常に0です。
+         */
+        private static TokenRules minimize(String[] names, int[] points, List<int[]> table, int[] accept) {
+            int n = accept.length;
+            int classes = points.length;
+            int[] block = new int[n];
+            int blocks = 0;
+            Map<Integer, Integer> initial = new HashMap<>();
+            for (int d = 0; d < n; d++) {
+                Integer b = initial.get(accept[d]);
+                if (b == null) {
+                    b = blocks++;
+                    initial.put(accept[d], b);
+                }
+                block[d] = b;
+            }
+            for (;;) {
+                Map<Signature, Integer> split = new HashMap<>();
+                int[] refined = new int[n];
+                for (int d = 0; d < n; d++) {
+                    int[] key = new int[classes + 1];
+                    key[0] = block[d];
+                    int[] row = table.get(d);
+                    for (int c = 0; c < classes; c++) {
+                        key[c + 1] = row[c] < 0 ? -1 : block[row[c]];
+                    }
+                    Signature sig = new Signature(key);
+                    Integer b = split.get(sig);
+                    if (b == null) {
+                        b = split.size();
+                        split.put(sig, b);
+                    }
+                    refined[d] = b;
+                }
+                block = refined;
+                if (split.size() == blocks) {
+                    break;
+                }
+                blocks = split.size();
+            }
+            int[] next = new int[blocks * classes];
+            int[] minAccept = new int[blocks];
+            for (int d = 0; d < n; d++) {
+                int b = block[d];
+                int[] row = table.get(d);
+                for (int c = 0; c < classes; c++) {
+                    next[b * classes + c] = row[c] < 0 ? -1 : block[row[c]];
+                }
+                minAccept[b] = accept[d];
+            }
+            return new TokenRules(names, points, next, minAccept);
+        }
+
+        private void closure(BitSet s) {
+            ArrayDeque<Integer> stack = new ArrayDeque<>();
+            s.stream().forEach(stack::push);
+            while (!stack.isEmpty()) {
+                int q = stack.pop();
+                if (eps[q] == null) {
+                    continue;
+                }
+                for (int t : eps[q]) {
+                    if (!s.get(t)) {
+                        s.set(t);
+                        stack.push(t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 構文木のノードからNFAの断片を作ります。
+         *
+         * @return 断片の開始状態と終了状態
+         */
+        private int[] build(Node node) {
+            switch (node.kind) {
+            case Node.SET: {
+                int s = newState();
+                int e = newState();
+                edgeSet[s] = sets.size();
+                edgeTo[s] = e;
+                sets.add(node.set);
+                return new int[] { s, e };
+            }
+            case Node.CAT: {
+                int[] a = build(node.left);
+                int[] b = build(node.right);
+                addEpsilon(a[1], b[0]);
+                return new int[] { a[0], b[1] };
+            }
+            case Node.ALT: {
+                int[] a = build(node.left);
+                int[] b = build(node.right);
+                int s = newState();
+                int e = newState();
+                addEpsilon(s, a[0]);
+                addEpsilon(s, b[0]);
+                addEpsilon(a[1], e);
+                addEpsilon(b[1], e);
+                return new int[] { s, e };
+            }
+            case Node.REPEAT: {
+                int s = newState();
+                int e = s;
+                for (int i = 0; i < node.min; i++) {
+                    int[] f = build(node.left);
+                    addEpsilon(e, f[0]);
+                    e = f[1];
+                }
+                if (node.max < 0) {
+                    int[] f = build(node.left);
+                    int end = newState();
+                    addEpsilon(e, f[0]);
+                    addEpsilon(e, end);
+                    addEpsilon(f[1], f[0]);
+                    addEpsilon(f[1], end);
+                    return new int[] { s, end };
+                }
+                int end = newState();
+                for (int i = node.min; i < node.max; i++) {
+                    int[] f = build(node.left);
+                    addEpsilon(e, f[0]);
+                    addEpsilon(e, end);
+                    e = f[1];
+                }
+                addEpsilon(e, end);
+                return new int[] { s, end };
+            }
+            default: {
+                int s = newState();
+                int e = newState();
+                addEpsilon(s, e);
+                return new int[] { s, e };
+            }
+            }
+        }
+
+        private int newState() {
+            if (count == edgeSet.length) {
+                int n = count * 2;
+                edgeSet = Arrays.copyOf(edgeSet, n);
+                edgeTo = Arrays.copyOf(edgeTo, n);
+                eps = Arrays.copyOf(eps, n);
+                nfaAccept = Arrays.copyOf(nfaAccept, n);
+            }
+            edgeSet[count] = -1;
+            nfaAccept[count] = -1;
+            return count++;
+        }
+
+        private void addEpsilon(int from, int to) {
+            int[] e = eps[from];
+            if (e == null) {
+                eps[from] = new int[] { to };
+            } else {
+                e = Arrays.copyOf(e, e.length + 1);
+                e[e.length - 1] = to;
+                eps[from] = e;
+            }
+        }
+    }
+
+    private static final class Signature {
+        private final int[] key;
+        private final int hash;
+
+        Signature(int[] key) {
+            this.key = key;
+            this.hash = Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Signature && Arrays.equals(key, ((Signature) obj).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        Integer[] order = new Integer[all.length / 2];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Integer.compare(all[x * 2], all[y * 2]));
+        int[] merged = new int[all.length];
+        int n = 0;
+        for (int i : order) {
+            int lo = all[i * 2];
+            int hi = all[i * 2 + 1];
+            if (n > 0 && lo <= merged[n - 1] + 1) {
+                merged[n - 1] = Math.max(merged[n - 1], hi);
+            } else {
+                merged[n++] = lo;
+                merged[n++] = hi;
+            }
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    private static int[] complement(int[] set) {
+        int[] result = new int[set.length + 2];
+        int n = 0;
+        int lo = 0;
+        for (int i = 0; i < set.length; i += 2) {
+            if (set[i] > lo) {
+                result[n++] = lo;
+                result[n++] = set[i] - 1;
+            }
+            lo = set[i + 1] + 1;
+        }
+        if (lo <= MAX_CHAR) {
+            result[n++] = lo;
+            result[n++] = MAX_CHAR;
+        }
+        return Arrays.copyOf(result, n);
+    }
+}
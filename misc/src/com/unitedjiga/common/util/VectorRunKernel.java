@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector APIで文字の範囲を判定する実装です。
+ * jdk.incubator.vectorモジュールに依存するため、{@link RunKernel#select(String)}からリフレクションで読み込みます。
+ *
+ * @author Junji Mikami
+ */
+final class VectorRunKernel extends RunKernel {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    @Override
+    int width() {
+        return SPECIES.length();
+    }
+
+    @Override
+    int skip(char[] a, int from, int to, char[] ranges) {
+        int width = SPECIES.length();
+        int i = from;
+        while (i + width <= to) {
+            ShortVector v = ShortVector.fromCharArray(SPECIES, a, i);
+            VectorMask<Short> in = v.compare(VectorOperators.UNSIGNED_GE, (short) ranges[0])
+                    .and(v.compare(VectorOperators.UNSIGNED_LE, (short) ranges[1]));
+            for (int r = 2; r < ranges.length; r += 2) {
+                in = in.or(v.compare(VectorOperators.UNSIGNED_GE, (short) ranges[r])
+                        .and(v.compare(VectorOperators.UNSIGNED_LE, (short) ranges[r + 1])));
+            }
+            if (!in.allTrue()) {
+                return i + in.not().firstTrue();
+            }
+            i += width;
+        }
+        return i;
+    }
+}
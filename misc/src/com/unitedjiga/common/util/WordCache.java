@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 Junji Mikami.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.unitedjiga.common.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Lexerがワードトークンの文字列を再利用するための容量に上限のあるキャッシュです。
+ * 一度読み込んだワードと同じワードは、バッファから文字列を生成せずにキャッシュの文字列を返します。
+ * 繰り返し現れる識別子やキーワードが多い入力で、文字列の生成と保持するヒープを削減します。
+ *
+ * <p>
+ * キャッシュは2ウェイのセットアソシアティブ方式で、ワードのハッシュ値でセットを選択します。
+ * セットが満杯の場合の動作は{@link Eviction}で指定します。
+ * このクラスはスレッドセーフではありません。複数のスレッドのLexerで共有しないでください。
+ *
+ * @author Junji Mikami
+ * @see Lexer#setWordCache(WordCache)
+ */
+public final class WordCache {
+
+    /**
+     * セットが満杯の場合の動作です。
+     */
+    public enum Eviction {
+        /**
+         * セットの中で最も長く使用されていないワードを追い出して新しいワードを格納します。
+         */
+        LRU,
+        /**
+         * 新しいワードを格納せず、すでに格納されているワードを保持します。
+         */
+        NONE
+    }
+
+    private static final int WAYS = 2;
+
+    private final String[] words;
+    private final int[] hashes;
+    private final byte[] recent;
+    private final int mask;
+    private final Eviction eviction;
+    private int size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * 指定の容量でLRUの追い出しを行うキャッシュを構築します。
+     *
+     * @param capacity 格納するワードの最大数
+     * @throws IllegalArgumentException 容量が2より小さい場合
+     */
+    public WordCache(int capacity) {
+        this(capacity, Eviction.LRU);
+    }
+
+    /**
+     * 指定の容量と追い出しの動作のキャッシュを構築します。
+     * 実際の容量は、指定の容量以下で最大の2の累乗に切り下げられます。
+     *
+     * @param capacity 格納するワードの最大数
+     * @param eviction セットが満杯の場合の動作
+     * @throws IllegalArgumentException 容量が2より小さい場合
+     * @throws NullPointerException     追い出しの動作がnullの場合
+     */
+    public WordCache(int capacity, Eviction eviction) {
+        if (capacity < WAYS) {
+            throw new IllegalArgumentException(String.valueOf(capacity));
+        }
+        int sets = Integer.highestOneBit(capacity / WAYS);
+        words = new String[sets * WAYS];
+        hashes = new int[sets * WAYS];
+        recent = new byte[sets];
+        mask = sets - 1;
+        this.eviction = Objects.requireNonNull(eviction);
+    }
+
+    /**
+     * 文字配列の指定の範囲と同じワードの文字列を返します。
+     * キャッシュにない場合は文字列を生成して格納します。
+     */
+    String intern(char[] a, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + a[i];
+        }
+        int set = (h ^ (h >>> 16)) & mask;
+        int slot = set * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            String s = words[slot + way];
+            if (s != null && hashes[slot + way] == h && contentEquals(s, a, from, to)) {
+                hitCount++;
+                recent[set] = (byte) way;
+                return s;
+            }
+        }
+        missCount++;
+        String s = new String(a, from, to - from);
+        int way;
+        if (words[slot] == null) {
+            way = 0;
+            size++;
+        } else if (words[slot + 1] == null) {
+            way = 1;
+            size++;
+        } else if (eviction == Eviction.LRU) {
+            way = 1 - recent[set];
+            evictionCount++;
+        } else {
+            return s;
+        }
+        words[slot + way] = s;
+        hashes[slot + way] = h;
+        recent[set] = (byte) way;
+        return s;
+    }
+
+    private static boolean contentEquals(String s, char[] a, int from, int to) {
+        if (s.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i - from) != a[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 格納できるワードの最大数を返します。
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return words.length;
+    }
+
+    /**
+     * 格納されているワードの数を返します。
+     *
+     * @return ワードの数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * キャッシュのワードを返した回数を返します。
+     *
+     * @return ヒットした回数
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * キャッシュにないワードの文字列を生成した回数を返します。
+     *
+     * @return ミスした回数
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * ワードを追い出した回数を返します。
+     *
+     * @return 追い出した回数
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 格納されているワードをすべて削除し、回数を0に戻します。
+     */
+    public void clear() {
+        Arrays.fill(words, null);
+        Arrays.fill(recent, (byte) 0);
+        size = 0;
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "WordCache[size=" + size + ", capacity=" + capacity() + ", hits=" + hitCount + ", misses="
+                + missCount + ", evictions=" + evictionCount + "]";
+    }
+}
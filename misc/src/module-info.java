@@ -1,4 +1,6 @@
 module com.unitedjiga.common.misc {
+    requires static jdk.incubator.vector;
+
     exports com.unitedjiga.common.parsing;
     exports com.unitedjiga.common.util to com.unitedjiga.commontest.misc;
 }
\ No newline at end of file